@@ -0,0 +1,213 @@
+package loa;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+import static loa.Square.ALL_SQUARES;
+import static loa.Square.NUM_SQUARES;
+
+/** A transposition table kept in a memory-mapped file, so that the
+ *  results of searches survive the process: a later run (or another
+ *  process mapping the same file) finds the depth, value, bound and best
+ *  move of every position searched before, and re-searching the same
+ *  positions costs little more than probing them.
+ *
+ *  The file holds a header (MAGIC, FORMAT, the number of entries and the
+ *  identity of the evaluator whose values it stores) followed by the
+ *  entries, in buckets of two: one replaced only by
+ *  searches at least as deep, and one always replaced.  Each entry is two
+ *  longs, the data and the key XOR the data.  Writers store both without
+ *  locking; a reader accepts an entry only if the two agree with its key,
+ *  so an entry torn by concurrent writers reads as a miss.  Since other
+ *  processes may have the file mapped, an existing file is never
+ *  truncated or resized: one of another format or evaluator is
+ *  refused.
+ *  @author Shivang Singh
+ */
+final class AnalysisCache {
+
+    /** Identifies an analysis cache file. */
+    static final int MAGIC = 0x4c4f4143;
+    /** Version of the entry format and of the values stored, changed
+     *  whenever the evaluation changes.  Files of other versions are
+     *  refused. */
+    static final int FORMAT = 4;
+    /** Size of the file header (bytes). */
+    static final int HEADER_SIZE = 24;
+    /** Size of an entry (bytes). */
+    static final int ENTRY_SIZE = 16;
+    /** Default size of the file (megabytes). */
+    static final int DEFAULT_MEGABYTES = 64;
+    /** Largest size of the file (megabytes). */
+    static final int MAX_MEGABYTES = 1024;
+
+    /** Kinds of stored value: a lower bound, an upper bound, or exact. */
+    static final int LOWER = 1, UPPER = 2, EXACT = 3;
+    /** Result of probe for a position not found. */
+    static final long NONE = 0;
+
+    /** Return the cache in FILE of values from the evaluator identified
+     *  by EVALUATOR.  If FILE is missing or empty, it is created to hold
+     *  about MEGABYTES megabytes of entries; otherwise it keeps its size.
+     *  Throws IOException if FILE is not a cache of this FORMAT, or holds
+     *  values from another evaluator. */
+    static AnalysisCache open(File file, int megabytes, long evaluator)
+        throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw");
+             FileLock lock = out.getChannel().lock()) {
+            FileChannel channel = out.getChannel();
+            if (channel.size() == 0) {
+                create(out, megabytes, evaluator);
+            }
+            long entries = entries(out);
+            if (entries < 2 || Long.bitCount(entries) != 1
+                || entries > (MAX_MEGABYTES << 20) / ENTRY_SIZE
+                || channel.size() != HEADER_SIZE + entries * ENTRY_SIZE) {
+                throw new IOException(file + " is not an analysis cache "
+                                      + "of format " + FORMAT);
+            }
+            if (out.readLong() != evaluator) {
+                throw new IOException(file + " holds values from another "
+                                      + "evaluator");
+            }
+            return new AnalysisCache(channel.map(FileChannel.MapMode
+                                                 .READ_WRITE, 0,
+                                                 channel.size()),
+                                     (int) entries, evaluator);
+        }
+    }
+
+    /** Write to OUT, an empty file, an empty cache of about MEGABYTES
+     *  megabytes of entries from the evaluator identified by
+     *  EVALUATOR. */
+    private static void create(RandomAccessFile out, int megabytes,
+                               long evaluator) throws IOException {
+        long bytes = (long) Math.min(Math.max(1, megabytes), MAX_MEGABYTES)
+            << 20;
+        long entries = Long.highestOneBit(bytes / ENTRY_SIZE);
+        out.setLength(HEADER_SIZE + entries * ENTRY_SIZE);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeLong(entries);
+        out.writeLong(evaluator);
+    }
+
+    /** Return the number of entries in the header of OUT, or 0 if OUT does
+     *  not begin with the header of a cache of this FORMAT.  Leaves OUT
+     *  positioned at the evaluator's identity. */
+    private static long entries(RandomAccessFile out) throws IOException {
+        if (out.length() < HEADER_SIZE) {
+            return 0;
+        }
+        out.seek(0);
+        if (out.readInt() != MAGIC || out.readInt() != FORMAT) {
+            return 0;
+        }
+        return out.readLong();
+    }
+
+    /** A cache whose header and ENTRIES entries, from the evaluator
+     *  identified by EVALUATOR, are in DATA. */
+    private AnalysisCache(MappedByteBuffer data, int entries,
+                          long evaluator) {
+        _data = data;
+        _mask = entries / 2 - 1;
+        _evaluator = evaluator;
+    }
+
+    /** Return the identity of the evaluator whose values I hold. */
+    long evaluator() {
+        return _evaluator;
+    }
+
+    /** Return the data stored for KEY, or NONE if there is none. */
+    long probe(long key) {
+        int bucket = bucket(key);
+        for (int slot = 0; slot < 2; slot += 1) {
+            int offset = bucket + slot * ENTRY_SIZE;
+            long data = _data.getLong(offset);
+            if (data != NONE
+                && (_data.getLong(offset + Long.BYTES) ^ data) == key) {
+                return data;
+            }
+        }
+        return NONE;
+    }
+
+    /** Store, for KEY, the result of a search to DEPTH: a VALUE of kind
+     *  BOUND, and best move MOVE (or null). */
+    void store(long key, int depth, int bound, int value, Move move) {
+        long data = ((long) value & 0xffffffffL)
+            | (long) Math.min(depth, MAX_STORED_DEPTH) << DEPTH_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) (move == null ? 0 : moveIndex(move)) << MOVE_SHIFT;
+        int bucket = bucket(key);
+        long deep = _data.getLong(bucket);
+        boolean replaceDeep = deep == NONE || depth(deep) <= depth
+            || (_data.getLong(bucket + Long.BYTES) ^ deep) == key;
+        int offset = replaceDeep ? bucket : bucket + ENTRY_SIZE;
+        _data.putLong(offset, data);
+        _data.putLong(offset + Long.BYTES, key ^ data);
+    }
+
+    /** Return the depth of the search that stored DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & MAX_STORED_DEPTH;
+    }
+
+    /** Return the kind of value in DATA: LOWER, UPPER or EXACT. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 3;
+    }
+
+    /** Return the value in DATA. */
+    static int value(long data) {
+        return (int) data;
+    }
+
+    /** Return the best move in DATA, or null if none was stored.  The
+     *  move may be illegal if the key collided. */
+    static Move move(long data) {
+        int index = (int) (data >>> MOVE_SHIFT) & 0xfff;
+        if (index == 0) {
+            return null;
+        }
+        return Move.mv(ALL_SQUARES[index / NUM_SQUARES],
+                       ALL_SQUARES[index % NUM_SQUARES]);
+    }
+
+    /** Write the cache's changes back to its file now, rather than when
+     *  the system chooses. */
+    void flush() {
+        _data.force();
+    }
+
+    /** Return the offset of the bucket of KEY. */
+    private int bucket(long key) {
+        int index = (int) (key ^ (key >>> 32)) & _mask;
+        return HEADER_SIZE + index * 2 * ENTRY_SIZE;
+    }
+
+    /** Return a nonzero index of MOVE, from which move(data) recovers
+     *  it. */
+    private static int moveIndex(Move move) {
+        return move.getFrom().index() * NUM_SQUARES + move.getTo().index();
+    }
+
+    /** Positions in the data of the depth, bound and move fields. */
+    private static final int DEPTH_SHIFT = 32, BOUND_SHIFT = 40,
+        MOVE_SHIFT = 42;
+    /** Largest depth stored. */
+    private static final int MAX_STORED_DEPTH = 0xff;
+
+    /** The mapped file. */
+    private final MappedByteBuffer _data;
+    /** Mask giving a bucket number from a key. */
+    private final int _mask;
+    /** Identity of the evaluator whose values I hold. */
+    private final long _evaluator;
+}
@@ -0,0 +1,87 @@
+package loa;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+import static loa.Move.mv;
+
+/** Tests of AnalysisCache.
+ *  @author Shivang Singh
+ */
+public class AnalysisCacheTest {
+
+    /** Test that the analysis cache keeps entries across openings. */
+    @Test
+    public void testPersist() throws IOException {
+        File file = File.createTempFile("loa", ".cache");
+        file.deleteOnExit();
+        long key = Symmetry.key(new Board(BoardTest.BOARD1, BP));
+        AnalysisCache cache = AnalysisCache.open(file, 1, 0);
+        assertEquals("empty", AnalysisCache.NONE, cache.probe(key));
+        cache.store(key, 5, AnalysisCache.LOWER, -123, mv("f3-d5"));
+        cache.flush();
+        long data = AnalysisCache.open(file, 1, 0).probe(key);
+        assertEquals("depth", 5, AnalysisCache.depth(data));
+        assertEquals("bound", AnalysisCache.LOWER, AnalysisCache.bound(data));
+        assertEquals("value", -123, AnalysisCache.value(data));
+        assertEquals("move", mv("f3-d5"), AnalysisCache.move(data));
+        assertEquals("other key", AnalysisCache.NONE, cache.probe(key + 1));
+    }
+
+    /** Test that files that are not caches of the current format and
+     *  evaluator are refused and left as they were, and that an existing
+     *  cache keeps its size and entries whatever size is asked for. */
+    @Test
+    public void testRefuseMismatched() throws IOException {
+        File file = File.createTempFile("loa", ".cache");
+        file.deleteOnExit();
+        byte[] junk = new byte[4096];
+        Arrays.fill(junk, (byte) 7);
+        Files.write(file.toPath(), junk);
+        assertRefused(file, EVALUATOR);
+        assertArrayEquals("junk unchanged", junk,
+                          Files.readAllBytes(file.toPath()));
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(0);
+            out.setLength(AnalysisCache.HEADER_SIZE
+                          + 2 * AnalysisCache.ENTRY_SIZE);
+            out.writeInt(AnalysisCache.MAGIC);
+            out.writeInt(AnalysisCache.FORMAT + 1);
+            out.writeLong(2);
+        }
+        assertRefused(file, EVALUATOR);
+
+        file.delete();
+        long key = Symmetry.key(new Board(BoardTest.BOARD1, BP));
+        AnalysisCache.open(file, 1, EVALUATOR)
+            .store(key, 3, AnalysisCache.EXACT, 9, mv("f3-d5"));
+        long size = file.length();
+        long data = AnalysisCache.open(file, 2, EVALUATOR).probe(key);
+        assertEquals("size kept", size, file.length());
+        assertEquals("entry kept", 9, AnalysisCache.value(data));
+        assertRefused(file, EVALUATOR + 1);
+        assertEquals("other evaluator: size kept", size, file.length());
+    }
+
+    /** Assert that opening FILE for the values of EVALUATOR fails. */
+    private static void assertRefused(File file, long evaluator) {
+        try {
+            AnalysisCache.open(file, 1, evaluator);
+            fail("opened " + file);
+        } catch (IOException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Identity of the evaluator used in these tests. */
+    private static final long EVALUATOR =
+        MachinePlayer.evaluatorIdentity(null);
+}
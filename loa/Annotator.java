@@ -0,0 +1,347 @@
+package loa;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static loa.Piece.*;
+
+/** Annotates recorded games.  A transcript is the output of a
+ *  TextReporter: each move on a line of its own as "* f1-d3" (possibly
+ *  after prompts), and a note announcing the result ("* White wins.")
+ *  at the end of each game.  Every position of each game is searched with
+ *  a fixed depth, and each move that loses more than a threshold against
+ *  the best move found is flagged.
+ *
+ *  Games are annotated in parallel, each worker thread replaying games on
+ *  a Board and searching with a MachinePlayer of its own.  The workers
+ *  share a cache of the positions already searched, keyed by the
+ *  canonical form of each position under the board's symmetries and the
+ *  exchange of colours (Symmetry.canonical), so the common openings of a
+ *  large collection, and their reflections, are searched once.  The
+ *  annotations are written in the order of the games as soon as each is
+ *  complete, followed by the throughput in plies per second.
+ *  @author Shivang Singh
+ */
+final class Annotator {
+
+    /** Default depth of the search of each position. */
+    static final int DEFAULT_DEPTH = 4;
+    /** Default loss of value beyond which a move is flagged. */
+    static final int DEFAULT_THRESHOLD = 200;
+    /** Maximum number of cached positions. */
+    static final int CACHE_LIMIT = 1 << 20;
+
+    /** A recorded game: its moves in order, and where it was read. */
+    static final class Transcript {
+
+        /** A game read from SOURCE with moves MOVES. */
+        Transcript(String source, List<Move> moves) {
+            _source = source;
+            _moves = moves;
+        }
+
+        /** Return where I was read. */
+        String source() {
+            return _source;
+        }
+
+        /** Return my moves, in order. */
+        List<Move> moves() {
+            return _moves;
+        }
+
+        /** Where I was read. */
+        private final String _source;
+        /** My moves. */
+        private final List<Move> _moves;
+    }
+
+    /** An annotator that searches each position to DEPTH and flags moves
+     *  that lose more than THRESHOLD. */
+    Annotator(int depth, int threshold) {
+        _limits = SearchLimits.depth(depth);
+        _threshold = threshold;
+    }
+
+    /** Return the games in the transcript INPUT, naming each after SOURCE
+     *  and its position in INPUT.  A game ends at a note announcing its
+     *  result or at the end of INPUT. */
+    static List<Transcript> read(BufferedReader input, String source)
+        throws IOException {
+        List<Transcript> result = new ArrayList<>();
+        List<Move> moves = new ArrayList<>();
+        for (String line = input.readLine(); line != null;
+             line = input.readLine()) {
+            Matcher move = MOVE.matcher(line);
+            if (move.find()) {
+                moves.add(Move.mv(move.group(1)));
+            } else if (RESULT.matcher(line).find() && !moves.isEmpty()) {
+                result.add(new Transcript(source + "#" + (result.size() + 1),
+                                          moves));
+                moves = new ArrayList<>();
+            }
+        }
+        if (!moves.isEmpty()) {
+            result.add(new Transcript(source + "#" + (result.size() + 1),
+                                      moves));
+        }
+        return result;
+    }
+
+    /** Annotate GAMES with THREADS workers, writing the annotations of
+     *  each game to OUT in order as they are completed.  Returns the
+     *  number of plies annotated. */
+    long annotate(List<Transcript> games, int threads, PrintStream out) {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> annotations = new ArrayList<>();
+            for (int k = 0; k < games.size(); k += 1) {
+                Transcript game = games.get(k);
+                int number = k + 1;
+                annotations.add(workers.submit(() -> annotate(game,
+                                                              number)));
+            }
+            for (Future<String> annotation : annotations) {
+                out.print(annotation.get());
+                out.flush();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        return _plies.sum();
+    }
+
+    /** Return the number of moves flagged so far. */
+    long flagged() {
+        return _flagged.sum();
+    }
+
+    /** Return the number of positions found in the cache so far. */
+    long cacheHits() {
+        return _cacheHits.sum();
+    }
+
+    /** Return the annotations of GAME, game number NUMBER, replayed on
+     *  this thread's Board. */
+    private String annotate(Transcript game, int number) {
+        MachinePlayer engine = _engines.get();
+        Board board = _boards.get();
+        board.clear();
+        List<Move> moves = game.moves();
+        int[] scores = new int[moves.size() + 1];
+        Move[] best = new Move[moves.size() + 1];
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("game %d (%s): %d moves%n", number,
+                                    game.source(), moves.size()));
+        int played;
+        for (played = 0; ; played += 1) {
+            if (board.gameOver()) {
+                Piece winner = board.winner();
+                scores[played] = winner == WP ? DECIDED_VALUE
+                    : winner == BP ? -DECIDED_VALUE : 0;
+                break;
+            }
+            Entry entry = evaluate(engine, board);
+            scores[played] = entry.score();
+            best[played] = entry.best();
+            if (played == moves.size()) {
+                break;
+            }
+            if (!board.isLegal(moves.get(played))) {
+                result.append(String.format("  illegal move %s at ply %d%n",
+                                            moves.get(played), played + 1));
+                break;
+            }
+            board.makeMove(moves.get(played));
+        }
+        int flagged = 0;
+        for (int k = 0; k < played; k += 1) {
+            Piece side = k % 2 == 0 ? BP : WP;
+            Move mv = moves.get(k);
+            long drop = (side == WP ? 1L : -1L)
+                * ((long) clamp(scores[k]) - clamp(scores[k + 1]));
+            result.append(String.format("  %3d. %s %s score %s best %s",
+                                        k + 1, side.fullName(), mv,
+                                        scoreText(scores[k]), best[k]));
+            if (mv != best[k] && drop > _threshold) {
+                flagged += 1;
+                result.append(String.format(" drop %s ??",
+                                            drop >= DECIDED_VALUE
+                                            ? "decisive" : drop));
+            }
+            result.append(String.format("%n"));
+        }
+        result.append(String.format("game %d: %d plies, %d flagged%n",
+                                    number, played, flagged));
+        _plies.add(played);
+        _flagged.add(flagged);
+        return result.toString();
+    }
+
+    /** Return the value (positive favours white) and best move of BOARD,
+     *  on which the game is not over, searching with ENGINE unless BOARD
+     *  or an image of it under the board's symmetries and the exchange of
+     *  colours is cached.  The cache holds results for the canonical
+     *  images, keyed as MachinePlayer's analysis cache is, so that a
+     *  position nearer the move limit is searched again. */
+    Entry evaluate(MachinePlayer engine, Board board) {
+        Symmetry.Canonical canon = Symmetry.canonical(board, true);
+        long key = MachinePlayer.cacheKey(board, canon.key());
+        int sense = canon.swapped() ? -1 : 1;
+        Entry entry = _cache.get(key);
+        if (entry != null) {
+            _cacheHits.increment();
+            return new Entry(sense * entry.score(),
+                             entry.best() == null ? null
+                             : canon.toOriginal(entry.best()));
+        }
+        int[] value = new int[1];
+        Move best = engine.searchForMove(board, _limits,
+                                         (depth, score, nodes, millis, pv)
+                                         -> value[0] = score);
+        if (_cache.size() < CACHE_LIMIT) {
+            _cache.putIfAbsent(key, new Entry(sense * value[0],
+                                              best == null ? null
+                                              : canon.toCanonical(best)));
+        }
+        return new Entry(value[0], best);
+    }
+
+    /** Return VALUE limited to the range of decided values. */
+    private static int clamp(int value) {
+        return Math.max(-DECIDED_VALUE, Math.min(DECIDED_VALUE, value));
+    }
+
+    /** Return VALUE as text, naming the winner of decided values. */
+    private static String scoreText(int value) {
+        if (value >= DECIDED_VALUE) {
+            return "white-wins";
+        } else if (value <= -DECIDED_VALUE) {
+            return "black-wins";
+        }
+        return Integer.toString(value);
+    }
+
+    /** Annotate the games in the transcripts named by ARGS (the standard
+     *  input if there are none), with the options --depth=D,
+     *  --threshold=T and --threads=N (default: one per processor). */
+    public static void main(String... args) {
+        int depth = DEFAULT_DEPTH, threshold = DEFAULT_THRESHOLD,
+            threads = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--depth=")) {
+                    depth = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--threshold=")) {
+                    threshold = Integer.parseInt(arg.substring(12));
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring(10));
+                } else if (arg.startsWith("--")) {
+                    throw new NumberFormatException();
+                } else {
+                    files.add(arg);
+                }
+            }
+        } catch (NumberFormatException excp) {
+            Utils.error(1, "Usage: java loa.Annotator [--depth=D] "
+                        + "[--threshold=T] [--threads=N] [FILE...]%n");
+        }
+        if (depth < 1 || threads < 1) {
+            Utils.error(1, "depth and threads must be positive%n");
+        }
+        List<Transcript> games = new ArrayList<>();
+        try {
+            if (files.isEmpty()) {
+                games.addAll(read(new BufferedReader(
+                    new InputStreamReader(System.in)), "stdin"));
+            }
+            for (String file : files) {
+                try (BufferedReader input =
+                     new BufferedReader(new FileReader(file))) {
+                    games.addAll(read(input, file));
+                }
+            }
+        } catch (IOException excp) {
+            Utils.error(1, "cannot read transcript: %s%n",
+                        excp.getMessage());
+        }
+        Annotator annotator = new Annotator(depth, threshold);
+        long start = System.currentTimeMillis();
+        long plies = annotator.annotate(games, threads, System.out);
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        System.out.printf("annotated %d games, %d plies in %d ms "
+                          + "(%d plies/s), %d flagged, %d cache hits%n",
+                          games.size(), plies, millis, plies * 1000 / millis,
+                          annotator.flagged(), annotator.cacheHits());
+    }
+
+    /** The cached result of searching a position. */
+    static final class Entry {
+
+        /** A result with value SCORE and best move BEST. */
+        Entry(int score, Move best) {
+            _score = score;
+            _best = best;
+        }
+
+        /** Return my value (positive favours white). */
+        int score() {
+            return _score;
+        }
+
+        /** Return my best move. */
+        Move best() {
+            return _best;
+        }
+
+        /** My value. */
+        private final int _score;
+        /** My best move. */
+        private final Move _best;
+    }
+
+    /** A move as printed by TextReporter. */
+    private static final Pattern MOVE =
+        Pattern.compile("\\*\\s+([a-h][1-8]-[a-h][1-8])\\s*$");
+    /** A note announcing the result of a game. */
+    private static final Pattern RESULT =
+        Pattern.compile("\\*\\s+(Tie game|\\w+ wins)\\.");
+    /** Magnitude of decided values. */
+    private static final int DECIDED_VALUE = MachinePlayer.DECIDED_VALUE;
+
+    /** Limits of the search of each position. */
+    private final SearchLimits _limits;
+    /** Loss of value beyond which a move is flagged. */
+    private final int _threshold;
+    /** Results of the positions already searched, for their canonical
+     *  images and by their keys (see evaluate). */
+    private final Map<Long, Entry> _cache = new ConcurrentHashMap<>();
+    /** The engine of each worker thread. */
+    private final ThreadLocal<MachinePlayer> _engines =
+        ThreadLocal.withInitial(MachinePlayer::new);
+    /** The board of each worker thread. */
+    private final ThreadLocal<Board> _boards =
+        ThreadLocal.withInitial(Board::new);
+    /** Plies annotated, moves flagged, and positions found in the cache. */
+    private final LongAdder _plies = new LongAdder(),
+        _flagged = new LongAdder(), _cacheHits = new LongAdder();
+}
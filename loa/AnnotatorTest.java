@@ -0,0 +1,110 @@
+package loa;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+import static loa.Move.mv;
+
+/** Tests of Annotator.
+ *  @author Shivang Singh
+ */
+public class AnnotatorTest {
+
+    /** Test that a transcript is split into games at the notes announcing
+     *  their results, ignoring prompts and other lines. */
+    @Test
+    public void testRead() throws IOException {
+        String text = "* b1-b3\n"
+            + "* h2-f2\n"
+            + "* White wins.\n"
+            + "* Black wins.\n"
+            + "> * c1-c3\n"
+            + "Illegal move.\n"
+            + "* a7-c7\n"
+            + "* Tie game.\n"
+            + "* d1-d3\n";
+        List<Annotator.Transcript> games =
+            Annotator.read(new BufferedReader(new StringReader(text)), "t");
+        assertEquals("games", 3, games.size());
+        assertEquals("first source", "t#1", games.get(0).source());
+        assertEquals("first moves", Arrays.asList(mv("b1-b3"), mv("h2-f2")),
+                     games.get(0).moves());
+        assertEquals("second moves", Arrays.asList(mv("c1-c3"), mv("a7-c7")),
+                     games.get(1).moves());
+        assertEquals("unfinished game", "t#3", games.get(2).source());
+        assertEquals("unfinished moves", Arrays.asList(mv("d1-d3")),
+                     games.get(2).moves());
+    }
+
+    /** Test that a move is flagged iff it is not the best move found and
+     *  loses more than the threshold. */
+    @Test(timeout = 60000)
+    public void testFlags() {
+        Board board = new Board();
+        List<Move> moves = new ArrayList<>();
+        for (int k = 0; k < 4; k += 1) {
+            Move best = new MachinePlayer().searchForMove(
+                board, SearchLimits.depth(2), null);
+            moves.add(best);
+            board.makeMove(best);
+        }
+        assertTrue("best moves", annotation(moves, Integer.MIN_VALUE)
+                   .contains("game 1: 4 plies, 0 flagged"));
+        board.retract();
+        for (Move other : board.legalMoves()) {
+            if (other != moves.get(3)) {
+                moves.set(3, other);
+                break;
+            }
+        }
+        String text = annotation(moves, Integer.MIN_VALUE);
+        assertTrue("other move", text.contains("game 1: 4 plies, 1 flagged"));
+        assertTrue("marked", text.contains(moves.get(3) + " score "));
+        assertTrue("marked drop", text.contains(" ??"));
+        assertTrue("threshold", annotation(moves, Integer.MAX_VALUE)
+                   .contains("game 1: 4 plies, 0 flagged"));
+    }
+
+    /** Return the annotations of a game with moves MOVES, searched to
+     *  depth 2 and flagged with THRESHOLD. */
+    private static String annotation(List<Move> moves, int threshold) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Annotator(2, threshold).annotate(
+            Arrays.asList(new Annotator.Transcript("test", moves)), 1,
+            new PrintStream(out, true));
+        return out.toString();
+    }
+
+    /** Test that the result for a position answers for the position with
+     *  colours and side to move exchanged, with the score negated. */
+    @Test(timeout = 60000)
+    public void testColourExchange() {
+        Board board = Bench.position(4);
+        Piece[][] contents = BoardTest.contents(board);
+        for (Piece[] row : contents) {
+            for (int c = 0; c < row.length; c += 1) {
+                row[c] = row[c] == EMP ? EMP : row[c].opposite();
+            }
+        }
+        Board exchanged = new Board(contents, board.turn().opposite());
+        Annotator annotator = new Annotator(3, 0);
+        MachinePlayer engine = new MachinePlayer();
+        Annotator.Entry searched = annotator.evaluate(engine, board);
+        assertEquals("no hits yet", 0, annotator.cacheHits());
+        Annotator.Entry cached = annotator.evaluate(engine, exchanged);
+        assertEquals("hit", 1, annotator.cacheHits());
+        assertEquals("score", -searched.score(), cached.score());
+        assertEquals("move", searched.best(), cached.best());
+        assertTrue("legal", exchanged.isLegal(cached.best()));
+    }
+}
@@ -0,0 +1,248 @@
+package loa;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.IllegalFormatException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/** A Reporter for headless and batch runs that writes what a TextReporter
+ *  would, without making its callers wait for formatting or output.
+ *  Reports are appended to a lock-free queue together with their
+ *  arguments, which must not change afterwards, and a single writer
+ *  thread formats them in order into a large buffer that it writes to
+ *  channels on the output and error streams when it fills, when the
+ *  stream changes, and when the queue runs dry.  Since the queue is first
+ *  in, first out, the reports of each game (made in order by one thread
+ *  at a time) appear in the order a TextReporter would write them.
+ *
+ *  The queue is unbounded, so reporting never blocks.  flush waits until
+ *  everything reported earlier is written, and close, which a shutdown
+ *  hook calls when the JVM exits, also stops the writer.
+ *  @author Shivang Singh
+ */
+final class AsyncReporter implements Reporter, AutoCloseable {
+
+    /** Size of the output buffer (bytes). */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** A reporter writing to the standard output and error. */
+    AsyncReporter() {
+        this(new FileOutputStream(FileDescriptor.out),
+             new FileOutputStream(FileDescriptor.err));
+    }
+
+    /** A reporter writing notes and moves to OUT and errors to ERR. */
+    AsyncReporter(OutputStream out, OutputStream err) {
+        _channels = new WritableByteChannel[] {
+            Channels.newChannel(out), Channels.newChannel(err)
+        };
+        _writer = new Thread(this::drain, "loa-reporter");
+        _writer.setDaemon(true);
+        _writer.start();
+        _exitHook = new Thread(this::close);
+        Runtime.getRuntime().addShutdownHook(_exitHook);
+    }
+
+    @Override
+    public void reportError(String fmt, Object... args) {
+        enqueue(new Report(ERR, fmt + "%n", args, null));
+    }
+
+    @Override
+    public void reportNote(String fmt, Object... args) {
+        enqueue(new Report(OUT, "* " + fmt + "%n", args, null));
+    }
+
+    @Override
+    public void reportMove(Move move) {
+        enqueue(new Report(OUT, "* %s%n", new Object[] { move }, null));
+    }
+
+    /** Wait until everything reported so far has been written. */
+    void flush() {
+        CountDownLatch done = new CountDownLatch(1);
+        enqueue(new Report(OUT, null, null, done));
+        awaitQuietly(done);
+    }
+
+    /** Write everything reported so far and stop the writer.  Later
+     *  reports are discarded. */
+    @Override
+    public void close() {
+        if (!_writer.isAlive()) {
+            return;
+        }
+        flush();
+        _closing = true;
+        LockSupport.unpark(_writer);
+        try {
+            _writer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != _exitHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(_exitHook);
+            } catch (IllegalStateException excp) {
+                /* Ignore: the JVM is already exiting. */
+            }
+        }
+    }
+
+    /** Return true iff writing has failed. */
+    boolean checkError() {
+        return _failed;
+    }
+
+    /** Add REPORT to the queue, waking the writer if it is idle. */
+    private void enqueue(Report report) {
+        if (!_writer.isAlive()) {
+            return;
+        }
+        _queue.offer(report);
+        if (_idle) {
+            LockSupport.unpark(_writer);
+        }
+    }
+
+    /** Body of the writer thread: write reports as they arrive until
+     *  closed. */
+    private void drain() {
+        while (true) {
+            Report report = _queue.poll();
+            if (report == null) {
+                writeBuffer();
+                if (_closing) {
+                    return;
+                }
+                _idle = true;
+                if (_queue.isEmpty() && !_closing) {
+                    LockSupport.park(this);
+                }
+                _idle = false;
+            } else if (report._done != null) {
+                writeBuffer();
+                report._done.countDown();
+            } else {
+                write(report);
+            }
+        }
+    }
+
+    /** Format REPORT into the buffer, first writing what the buffer holds
+     *  if it is for the other stream or there is no room. */
+    private void write(Report report) {
+        String text;
+        try {
+            text = String.format(report._format, report._args);
+        } catch (IllegalFormatException excp) {
+            text = report._format + System.lineSeparator();
+        }
+        byte[] bytes = text.getBytes(CHARSET);
+        if (report._stream != _bufferStream
+            || bytes.length > _buffer.remaining()) {
+            writeBuffer();
+            _bufferStream = report._stream;
+        }
+        if (bytes.length > _buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            _buffer.put(bytes);
+        }
+    }
+
+    /** Write and empty the buffer. */
+    private void writeBuffer() {
+        _buffer.flip();
+        writeFully(_buffer);
+        _buffer.clear();
+    }
+
+    /** Write the contents of DATA to the current stream. */
+    private void writeFully(ByteBuffer data) {
+        try {
+            while (data.hasRemaining() && !_failed) {
+                _channels[_bufferStream].write(data);
+            }
+        } catch (IOException excp) {
+            _failed = true;
+        }
+    }
+
+    /** Wait for DONE, even if interrupted, unless the writer stops. */
+    private void awaitQuietly(CountDownLatch done) {
+        boolean interrupted = false;
+        while (_writer.isAlive()) {
+            try {
+                if (done.await(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException excp) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** A queued report, or if DONE is not null, a request to be told when
+     *  the reports before it are written. */
+    private static final class Report {
+
+        /** A report to be written to STREAM, formatted from FORMAT and
+         *  ARGS, or a marker counting down DONE. */
+        Report(int stream, String format, Object[] args,
+               CountDownLatch done) {
+            _stream = stream;
+            _format = format;
+            _args = args;
+            _done = done;
+        }
+
+        /** Stream (OUT or ERR) to write to. */
+        private final int _stream;
+        /** Format of the text. */
+        private final String _format;
+        /** Arguments of _format. */
+        private final Object[] _args;
+        /** Latch counted down when this marker is reached, or null. */
+        private final CountDownLatch _done;
+    }
+
+    /** Indices of the output and error streams. */
+    private static final int OUT = 0, ERR = 1;
+    /** Interval at which flush checks that the writer is alive (ms). */
+    private static final long WAIT_MILLIS = 100;
+    /** Encoding of the text written. */
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /** Channels to the output and error streams. */
+    private final WritableByteChannel[] _channels;
+    /** Reports not yet written. */
+    private final Queue<Report> _queue = new ConcurrentLinkedQueue<>();
+    /** Text formatted but not yet written, all for _bufferStream. */
+    private final ByteBuffer _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /** The stream for which the buffer holds text. */
+    private int _bufferStream = OUT;
+    /** The writer thread. */
+    private final Thread _writer;
+    /** Hook closing me when the JVM exits. */
+    private final Thread _exitHook;
+    /** True while the writer waits for reports. */
+    private volatile boolean _idle;
+    /** True once I am closing. */
+    private volatile boolean _closing;
+    /** True once writing has failed. */
+    private volatile boolean _failed;
+}
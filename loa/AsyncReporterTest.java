@@ -0,0 +1,41 @@
+package loa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+import static loa.Move.mv;
+
+/** Tests of AsyncReporter.
+ *  @author Shivang Singh
+ */
+public class AsyncReporterTest {
+
+    /** Test that an AsyncReporter writes what a TextReporter would. */
+    @Test
+    public void testMatchesTextReporter() {
+        ByteArrayOutputStream textOut = new ByteArrayOutputStream(),
+            textErr = new ByteArrayOutputStream(),
+            asyncOut = new ByteArrayOutputStream(),
+            asyncErr = new ByteArrayOutputStream();
+        Reporter text = new TextReporter(new PrintStream(textOut),
+                                         new PrintStream(textErr));
+        AsyncReporter async = new AsyncReporter(asyncOut, asyncErr);
+        for (Reporter r : new Reporter[] { text, async }) {
+            for (int k = 0; k < 1000; k += 1) {
+                r.reportMove(mv("f3-d5"));
+                r.reportNote("%s wins after %d.", WP.fullName(), k);
+                if (k % 100 == 0) {
+                    r.reportError("illegal move: %s", "z9-a1");
+                }
+            }
+        }
+        async.close();
+        assertEquals("output", textOut.toString(), asyncOut.toString());
+        assertEquals("errors", textErr.toString(), asyncErr.toString());
+        assertFalse("write errors", async.checkError());
+    }
+}
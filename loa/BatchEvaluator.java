@@ -0,0 +1,148 @@
+package loa;
+
+/** Static evaluation of many positions at once.  Positions are given in
+ *  struct-of-arrays form, as parallel arrays of the black and white
+ *  pieces' bitboards (see Board.pieceBits), and every term is computed by
+ *  bitwise operations and population counts, without branching on the
+ *  contents of the board.
+ *
+ *  The terms for each side are its Euler number (groups less holes), and
+ *  its spread: the mean squared distance of its pieces from their centre
+ *  of mass.  Scores are positive when they favour white.
+ *
+ *  BatchEvaluator.get() uses scalar code, unless the system property
+ *  loa.vector is true and the JVM provides the Vector API (module
+ *  jdk.incubator.vector).  Without a lanewise population count (the JDK
+ *  17 Vector API has none) the vector code is slower than the scalar.
+ *  @author Shivang Singh
+ */
+abstract class BatchEvaluator {
+
+    /** Weight of each group (more exactly, unit of Euler number). */
+    static final int GROUP_WEIGHT = 32;
+    /** Scale of the spread term: SPREAD_SCALE times the mean squared
+     *  distance from the centre of mass. */
+    static final int SPREAD_SCALE = 16;
+
+    /** Return the evaluator to use. */
+    static BatchEvaluator get() {
+        return Boolean.getBoolean("loa.vector") && VECTOR != null
+            ? VECTOR : SCALAR;
+    }
+
+    /** Return the scalar evaluator. */
+    static BatchEvaluator scalar() {
+        return SCALAR;
+    }
+
+    /** Return the vectorised evaluator, or null if the JVM lacks the
+     *  Vector API. */
+    static BatchEvaluator vector() {
+        return VECTOR;
+    }
+
+    /** Set SCORES[K] to the score of the position with black pieces
+     *  BLACK[K] and white pieces WHITE[K], for 0 <= K < N. */
+    abstract void evaluate(long[] black, long[] white, int n, int[] scores);
+
+    /** Return true iff I use vector instructions. */
+    abstract boolean vectorised();
+
+    /** Return the score of the position with BLACK and WHITE pieces. */
+    static int evaluate(long black, long white) {
+        return sideTerm(black) - sideTerm(white);
+    }
+
+    /** Return the score of the position on BOARD. */
+    static int evaluate(Board board) {
+        return evaluate(board.pieceBits(Piece.BP), board.pieceBits(Piece.WP));
+    }
+
+    /** Return the (penalty) term for a side with pieces BITS. */
+    static int sideTerm(long bits) {
+        return GROUP_WEIGHT * euler(bits) + spread(bits);
+    }
+
+    /** Return the Euler number (groups less holes, by 8-connectivity) of
+     *  the set of squares BITS, counted as vertices less edges plus
+     *  triangles less squares of the complex it forms. */
+    static int euler(long bits) {
+        long e = bits >>> 1 & ~BitBoards.FILE_H,
+            n = bits >>> BOARD_SIZE,
+            ne = bits >>> (BOARD_SIZE + 1) & ~BitBoards.FILE_H,
+            nw = bits >>> (BOARD_SIZE - 1) & ~BitBoards.FILE_A;
+        long three = bits & e & (n | ne) | n & ne & (bits | e);
+        return Long.bitCount(bits)
+            - Long.bitCount(bits & e) - Long.bitCount(bits & n)
+            - Long.bitCount(bits & ne) - Long.bitCount(bits & nw)
+            + Long.bitCount(three) + 2 * Long.bitCount(bits & e & n & ne);
+    }
+
+    /** Return SPREAD_SCALE times the mean squared distance of the squares
+     *  in BITS from their centre of mass, or 0 if BITS is empty. */
+    static int spread(long bits) {
+        int count = Long.bitCount(bits);
+        if (count == 0) {
+            return 0;
+        }
+        long sum = 0, sumSquares = 0;
+        for (long[] coordBits : new long[][] { COL_BIT, ROW_BIT }) {
+            long s = 0;
+            for (int j = 0; j < COORD_BITS; j += 1) {
+                s += (long) Long.bitCount(bits & coordBits[j]) << j;
+                for (int k = 0; k < COORD_BITS; k += 1) {
+                    sumSquares += (long) Long.bitCount(bits & coordBits[j]
+                                                       & coordBits[k])
+                        << (j + k);
+                }
+            }
+            sum += s * s;
+        }
+        return (int) (SPREAD_SCALE * (count * sumSquares - sum)
+                      / ((long) count * count));
+    }
+
+    /** Evaluates one position at a time with scalar code. */
+    private static final class Scalar extends BatchEvaluator {
+        @Override
+        void evaluate(long[] black, long[] white, int n, int[] scores) {
+            for (int k = 0; k < n; k += 1) {
+                scores[k] = evaluate(black[k], white[k]);
+            }
+        }
+
+        @Override
+        boolean vectorised() {
+            return false;
+        }
+    }
+
+    /** Return the vectorised evaluator if the JVM supports it, else
+     *  null. */
+    private static BatchEvaluator load() {
+        try {
+            return (BatchEvaluator) Class
+                .forName("loa.VectorBatchEvaluator")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return null;
+        }
+    }
+
+    /** Length of the side of the board. */
+    static final int BOARD_SIZE = Square.BOARD_SIZE;
+    /** Number of bits in a column or row number. */
+    static final int COORD_BITS = 3;
+    /** COL_BIT[J] is the set of squares whose column number has bit J set;
+     *  likewise ROW_BIT[J] for row numbers. */
+    static final long[] COL_BIT = {
+        0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L
+    }, ROW_BIT = {
+        0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L
+    };
+
+    /** The scalar evaluator. */
+    private static final BatchEvaluator SCALAR = new Scalar();
+    /** The vectorised evaluator, or null if unavailable. */
+    private static final BatchEvaluator VECTOR = load();
+}
@@ -0,0 +1,53 @@
+package loa;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of BatchEvaluator.
+ *  @author Shivang Singh
+ */
+public class BatchEvaluatorTest {
+
+    /** Test that the vectorised evaluator, where the JVM provides one,
+     *  gives the scalar evaluator's scores on random positions. */
+    @Test
+    public void testVectorMatchesScalar() {
+        BatchEvaluator vector = BatchEvaluator.vector();
+        if (vector == null) {
+            return;
+        }
+        Random rand = new Random(34);
+        for (int n = 0; n < 40; n += 1) {
+            long[] black = new long[n], white = new long[n];
+            for (int k = 0; k < n; k += 1) {
+                if (k % 2 == 0) {
+                    black[k] = rand.nextLong();
+                    white[k] = rand.nextLong() & ~black[k];
+                } else {
+                    black[k] = randomPieces(rand, 1 + rand.nextInt(12), 0);
+                    white[k] = randomPieces(rand, 1 + rand.nextInt(12),
+                                            black[k]);
+                }
+            }
+            int[] expected = new int[n], scores = new int[n];
+            BatchEvaluator.scalar().evaluate(black, white, n, expected);
+            vector.evaluate(black, white, n, scores);
+            assertArrayEquals("scores of " + n + " positions",
+                              expected, scores);
+        }
+    }
+
+    /** Return a set of N random squares that are not in OCCUPIED. */
+    private static long randomPieces(Random rand, int n, long occupied) {
+        long bits = 0;
+        while (Long.bitCount(bits) < n) {
+            long square = 1L << rand.nextInt(64);
+            if ((square & occupied) == 0) {
+                bits |= square;
+            }
+        }
+        return bits;
+    }
+}
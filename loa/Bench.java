@@ -0,0 +1,103 @@
+package loa;
+
+import java.io.PrintStream;
+
+import static loa.Piece.*;
+
+/** A fixed search benchmark.  Searching the same built-in positions to the
+ *  same depth visits the same number of nodes unless the behaviour of the
+ *  search changes, so the total is a signature of the search; the
+ *  elapsed time and nodes per second measure its speed.
+ *  @author Shivang Singh
+ */
+final class Bench {
+
+    /** Default depth of the benchmark searches. */
+    static final int DEFAULT_DEPTH = 8;
+
+    /** Search each benchmark position within LIMITS with ENGINE,
+     *  reporting each search and the totals on OUT, until done or LIMITS
+     *  are cancelled.  Returns the total number of nodes.  Totals are
+     *  comparable only for runs without an analysis cache (loa.cache),
+     *  whose contents carry over from run to run. */
+    static long run(MachinePlayer engine, SearchLimits limits,
+                    PrintStream out) {
+        long totalNodes = 0, totalMillis = 0;
+        for (int k = 0; k < NAMES.length && !limits.cancelled(); k += 1) {
+            Board board = position(k);
+            long start = System.currentTimeMillis();
+            engine.searchForMove(board, limits, null);
+            long millis = System.currentTimeMillis() - start;
+            out.printf("bench %s: nodes %d time %d%n",
+                       NAMES[k], engine.nodes(), millis);
+            totalNodes += engine.nodes();
+            totalMillis += millis;
+        }
+        out.printf("bench: depth %d positions %d nodes %d time %d nps %d%n",
+                   limits.maxDepth(), NAMES.length, totalNodes, totalMillis,
+                   totalNodes * 1000 / Math.max(1, totalMillis));
+        return totalNodes;
+    }
+
+    /** Return a new board set up with benchmark position K. */
+    static Board position(int k) {
+        Piece[][] contents = new Piece[Square.BOARD_SIZE][Square.BOARD_SIZE];
+        for (int i = 0; i < Square.NUM_SQUARES; i += 1) {
+            int row = Square.BOARD_SIZE - 1 - i / Square.BOARD_SIZE;
+            String abbrev = POSITIONS[k].substring(i, i + 1);
+            contents[row][i % Square.BOARD_SIZE] =
+                abbrev.equals(BP.abbrev()) ? BP
+                : abbrev.equals(WP.abbrev()) ? WP : EMP;
+        }
+        return new Board(contents, TURNS[k]);
+    }
+
+    /** Run the benchmark with a default MachinePlayer to depth ARGS[0],
+     *  which must be at least 1 (default DEFAULT_DEPTH). */
+    public static void main(String... args) {
+        int depth = DEFAULT_DEPTH;
+        if (args.length > 0) {
+            try {
+                depth = Integer.parseInt(args[0]);
+                if (depth < 1) {
+                    throw new IllegalArgumentException();
+                }
+            } catch (IllegalArgumentException excp) {
+                Utils.error(1, "Usage: java loa.Bench [DEPTH]%n");
+            }
+        }
+        run(new MachinePlayer(), SearchLimits.depth(depth), System.out);
+    }
+
+    /** Names of the benchmark positions.  Those named after files in
+     *  the testing directory are the positions those scripts set up. */
+    private static final String[] NAMES = {
+        "initial", "depth-1", "setUpWin-1",
+        "opening", "middlegame", "late-middlegame",
+    };
+
+    /** The benchmark positions, each the contents of the board from a8 to
+     *  h8, then a7 to h7, and so on to h1 ("b" for black, "w" for white,
+     *  "-" for empty). */
+    private static final String[] POSITIONS = {
+        "-bbbbbb-" + "w------w" + "w------w" + "w------w"
+        + "w------w" + "w------w" + "w------w" + "-bbbbbb-",
+        "-ww--www" + "--------" + "--------" + "w-------"
+        + "--------" + "----b---" + "bb------" + "bb------",
+        "-------b" + "--------" + "--------" + "--------"
+        + "---w----" + "--b-----" + "--------" + "----w---",
+        "bb-b--b-" + "w-w----w" + "b-w-bw-w" + "-------w"
+        + "--------" + "---bw--w" + "w------w" + "-b-bb-b-",
+        "---wb-b-" + "w-w---ww" + "b--bb---" + "----w---"
+        + "b-------" + "----b--w" + "w-----w-" + "bb-bw---",
+        "---wb-b-" + "w-w----w" + "wb-b----" + "----ww--"
+        + "--------" + "-----bw-" + "---b--w-" + "bb--b---",
+    };
+
+    /** The sides to move in the benchmark positions. */
+    private static final Piece[] TURNS = { BP, BP, WP, BP, BP, BP };
+
+    /** Not instantiable. */
+    private Bench() {
+    }
+}
@@ -0,0 +1,30 @@
+package loa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Bench.
+ *  @author Shivang Singh
+ */
+public class BenchTest {
+
+    /** Test that the benchmark visits the same number of nodes each time
+     *  it runs, with the same engine or a fresh one. */
+    @Test(timeout = 60000)
+    public void testSignature() {
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        MachinePlayer engine = new MachinePlayer();
+        engine.setOption("cache", false);
+        long nodes = Bench.run(engine, SearchLimits.depth(6), out);
+        assertTrue("searched", nodes > 0);
+        assertEquals("same engine", nodes,
+                     Bench.run(engine, SearchLimits.depth(6), out));
+        MachinePlayer fresh = new MachinePlayer();
+        fresh.setOption("cache", false);
+        assertEquals("fresh engine", nodes,
+                     Bench.run(fresh, SearchLimits.depth(6), out));
+    }
+}
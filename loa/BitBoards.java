@@ -0,0 +1,89 @@
+package loa;
+
+import static loa.Square.*;
+
+/** Precomputed tables and operations on bitboards: longs in which bit
+ *  S.index() stands for Square S.
+ *  @author Shivang Singh
+ */
+final class BitBoards {
+
+    /** Squares in column a, and in column h. */
+    static final long FILE_A = 0x0101010101010101L,
+        FILE_H = FILE_A << (BOARD_SIZE - 1);
+
+    /** LINE[S][D] is the set of squares on the line through square index S
+     *  in direction D (including S itself).  Directions D and D + 4 give
+     *  the same line. */
+    static final long[][] LINE = new long[NUM_SQUARES][8];
+
+    /** RAY[S][D] lists the indices of the squares met going from square
+     *  index S in direction D, nearest first. */
+    static final int[][][] RAY = new int[NUM_SQUARES][8][];
+
+    /** RAY_PREFIX[S][D][K] is the set of the first K squares of RAY[S][D]. */
+    static final long[][][] RAY_PREFIX = new long[NUM_SQUARES][8][];
+
+    static {
+        for (Square s : ALL_SQUARES) {
+            int i = s.index();
+            for (int dir = 0; dir < 8; dir += 1) {
+                int n = 0;
+                while (s.moveDest(dir, n + 1) != null) {
+                    n += 1;
+                }
+                RAY[i][dir] = new int[n];
+                RAY_PREFIX[i][dir] = new long[n + 1];
+                for (int k = 1; k <= n; k += 1) {
+                    RAY[i][dir][k - 1] = s.moveDest(dir, k).index();
+                    RAY_PREFIX[i][dir][k] =
+                        RAY_PREFIX[i][dir][k - 1] | 1L << RAY[i][dir][k - 1];
+                }
+            }
+            for (int dir = 0; dir < 8; dir += 1) {
+                int opposite = (dir + 4) % 8;
+                LINE[i][dir] = 1L << i
+                    | RAY_PREFIX[i][dir][RAY[i][dir].length]
+                    | RAY_PREFIX[i][opposite][RAY[i][opposite].length];
+            }
+        }
+    }
+
+    /** Return the set of squares in or king-adjacent to a square in SET. */
+    static long expand(long set) {
+        long horiz = set | (set << 1 & ~FILE_A) | (set >>> 1 & ~FILE_H);
+        return horiz | horiz << BOARD_SIZE | horiz >>> BOARD_SIZE;
+    }
+
+    /** Return true iff the squares in the non-empty SET form a single
+     *  8-connected group. */
+    static boolean connected(long set) {
+        long reached = set & -set, previous;
+        do {
+            previous = reached;
+            reached = expand(reached) & set;
+        } while (reached != previous);
+        return reached == set;
+    }
+
+    /** Return the index of the destination of the move from square index
+     *  FROM in direction DIR for the side owning OWN, with OPP the
+     *  opponent's pieces, or -1 if there is no legal such move. */
+    static int moveTarget(int from, int dir, long own, long opp) {
+        int dist = Long.bitCount((own | opp) & LINE[from][dir]);
+        int[] ray = RAY[from][dir];
+        if (dist > ray.length) {
+            return -1;
+        }
+        int to = ray[dist - 1];
+        if ((own & 1L << to) != 0
+            || (opp & RAY_PREFIX[from][dir][dist - 1]) != 0) {
+            return -1;
+        }
+        return to;
+    }
+
+    /** Not instantiable. */
+    private BitBoards() {
+    }
+}
@@ -9,7 +9,6 @@ import java.util.List;
 
 import java.util.regex.Pattern;
 
-import static java.lang.Math.min;
 import static loa.Piece.*;
 import static loa.Square.*;
 
@@ -24,6 +23,9 @@ class Board {
     /** Pattern describing a valid square designator (cr). */
     static final Pattern ROW_COL = Pattern.compile("^[a-h][1-8]$");
 
+    /** Kinds of move generated by addMoves: captures and non-captures. */
+    static final int CAPTURES = 1, QUIET_MOVES = 2;
+
     /** A Board whose initial contents are taken from INITIALCONTENTS
      *  and in which the player playing TURN is to move. The resulting
      *  Board has
@@ -60,7 +62,6 @@ class Board {
             }
         }
         _moves.clear();
-        legalMoves().clear();
         turnThatJustWent = null;
         _winnerKnown = false;
         _winner = null;
@@ -91,7 +92,18 @@ class Board {
         for (int i = 0; i < toCopyFrom.length; i++) {
             this._board[i] = toCopyFrom[i];
         }
+        for (int side = 0; side < _quads.length; side++) {
+            System.arraycopy(board._quads[side], 0, _quads[side], 0,
+                             NUM_QUADS);
+        }
+        System.arraycopy(board._euler4, 0, _euler4, 0, _euler4.length);
+        System.arraycopy(board._pieceBits, 0, _pieceBits, 0,
+                         _pieceBits.length);
+        System.arraycopy(board._windows, 0, _windows, 0, _windows.length);
+        System.arraycopy(board._lines, 0, _lines, 0, _lines.length);
+        _patternScore = board._patternScore;
         this._turn = board._turn;
+        this.turnThatJustWent = board.turnThatJustWent;
         this._moveLimit = board._moveLimit;
         this._winnerKnown = board._winnerKnown;
         this._winner = board._winner;
@@ -108,6 +120,27 @@ class Board {
             this._moves.add(m, board._moves.get(m));
         }
         this._subsetsInitialized = board._subsetsInitialized;
+        if (_accumulator != null) {
+            _accumulator.refresh(_pieceBits[BP.ordinal()],
+                                 _pieceBits[WP.ordinal()]);
+        }
+    }
+
+    /** Evaluate with NETWORK (none if null) from now on, keeping its
+     *  accumulator up to date as pieces move. */
+    void setNetwork(Network network) {
+        if (network == null) {
+            _accumulator = null;
+        } else {
+            _accumulator = network.new Accumulator();
+            _accumulator.refresh(_pieceBits[BP.ordinal()],
+                                 _pieceBits[WP.ordinal()]);
+        }
+    }
+
+    /** Return the accumulator of my network, or null if I have none. */
+    Network.Accumulator accumulator() {
+        return _accumulator;
     }
 
     /** Return the contents of the square at SQ. */
@@ -121,8 +154,8 @@ class Board {
         if (next != null) {
             this._turn = next;
         }
-        int index = sq.col() + (sq.row() * 8);
-        _board[index] = v;
+        put(sq.index(), v);
+        _subsetsInitialized = false;
     }
 
     /** Set the square at SQ to V, without modifying the side that
@@ -156,12 +189,26 @@ class Board {
         if (!_board[newIndex].equals(EMP)) {
             move = move.captureMove();
         }
-        _board[newIndex] = p;
-        _board[move.getFrom().col() + (8 * move.getFrom().row())] = EMP;
+        put(newIndex, p);
+        put(move.getFrom().index(), EMP);
         _moves.add(move);
         _subsetsInitialized = false;
     }
 
+    /** Pass the move to the other side without moving, as searches do to
+     *  test whether the side to move is comfortably ahead.  Must be undone
+     *  by retractNullMove before any other change to the board. */
+    void makeNullMove() {
+        turnThatJustWent = _turn;
+        _turn = _turn.opposite();
+    }
+
+    /** Undo the effect of makeNullMove. */
+    void retractNullMove() {
+        _turn = _turn.opposite();
+        turnThatJustWent = _turn.opposite();
+    }
+
     /** Retract (unmake) one move, returning to the state immediately before
      *  that move.  Requires that movesMade () > 0. */
     void retract() {
@@ -171,24 +218,36 @@ class Board {
         } else if (turn() == BP) {
             this._turn = WP;
         }
+        turnThatJustWent = _turn.opposite();
         Move takeBack = this._moves.get(this._moves.size() - 1);
         this._moves.remove(_moves.size() - 1);
         int ogIndexOfMovedPiece = takeBack.getFrom().col()
                                    + (takeBack.getFrom().row() * 8);
         int curIndex = takeBack.getTo().col() + (takeBack.getTo().row() * 8);
-        _board[ogIndexOfMovedPiece] = _board[curIndex];
+        put(ogIndexOfMovedPiece, _board[curIndex]);
         if (takeBack.isCapture()) {
             if (_board[ogIndexOfMovedPiece] == WP) {
-                _board[curIndex] = BP;
+                put(curIndex, BP);
             } else if (_board[ogIndexOfMovedPiece] == BP) {
-                _board[curIndex] = WP;
+                put(curIndex, WP);
             }
         } else {
-            _board[curIndex] = EMP;
+            put(curIndex, EMP);
         }
         _subsetsInitialized = false;
     }
 
+    /** Return move number K (numbering from 0) of those made and not
+     *  retracted.  Assumes 0 <= K < movesMade(). */
+    Move move(int k) {
+        return _moves.get(k);
+    }
+
+    /** Return the last move made and not retracted, or null if none. */
+    Move lastMove() {
+        return _moves.isEmpty() ? null : _moves.get(_moves.size() - 1);
+    }
+
     /** Return the Piece representing who is next to move. */
     Piece turn() {
         return _turn;
@@ -241,22 +300,63 @@ class Board {
         return isLegal(move.getFrom(), move.getTo());
     }
 
-    /** Return a sequence of all legal moves from this position. */
+    /** Return a sequence of all legal moves from this position, ordered
+     *  by the index of the square moved from, then of the square moved to.
+     *  The moves have isCapture() false. */
     List<Move> legalMoves() {
+        FlightEvents.BoardOperation event = sampleOperation("legalMoves");
         List<Move> legalMoves = new ArrayList<>();
-        for (Square s1: ALL_SQUARES) {
-            if (_board[s1.col() + (s1.row() * 8)] == turn()) {
-                for (Square s2 : ALL_SQUARES) {
-                    if (s1 != s2) {
-                        Move potentialMove = Move.mv(s1, s2);
-                        if (potentialMove != null && isLegal(potentialMove)) {
-                            legalMoves.add(potentialMove);
-                        }
+        addMoves(legalMoves, CAPTURES | QUIET_MOVES);
+        if (event != null) {
+            event.commit();
+        }
+        return legalMoves;
+    }
+
+    /** Return true iff MV is one of legalMoves(): a legal move of a piece
+     *  of the side to move.  Does not generate any other moves. */
+    boolean generates(Move mv) {
+        if (mv == null) {
+            return false;
+        }
+        Square from = mv.getFrom(), to = mv.getTo();
+        long own = _pieceBits[_turn.ordinal()];
+        if ((own & 1L << from.index()) == 0 || !from.isValidMove(to)) {
+            return false;
+        }
+        return BitBoards.moveTarget(from.index(), from.direction(to), own,
+                                    _pieceBits[_turn.opposite().ordinal()])
+            == to.index();
+    }
+
+    /** Add to MOVES, in the order used by legalMoves, the legal moves from
+     *  this position of the kinds in KINDS, a combination of CAPTURES and
+     *  QUIET_MOVES.  Each piece's targets are found directly from the
+     *  precomputed rays of BitBoards, one per direction. */
+    void addMoves(List<Move> moves, int kinds) {
+        long own = _pieceBits[_turn.ordinal()],
+            opp = _pieceBits[_turn.opposite().ordinal()];
+        long wanted = ((kinds & CAPTURES) != 0 ? opp : 0)
+            | ((kinds & QUIET_MOVES) != 0 ? ~(own | opp) : 0);
+        int[] targets = _targets;
+        for (long pieces = own; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            int n = 0;
+            for (int dir = 0; dir < 8; dir += 1) {
+                int to = BitBoards.moveTarget(from, dir, own, opp);
+                if (to >= 0 && (wanted & 1L << to) != 0) {
+                    int k;
+                    for (k = n; k > 0 && targets[k - 1] > to; k -= 1) {
+                        targets[k] = targets[k - 1];
                     }
+                    targets[k] = to;
+                    n += 1;
                 }
             }
+            for (int k = 0; k < n; k += 1) {
+                moves.add(Move.mv(ALL_SQUARES[from], ALL_SQUARES[targets[k]]));
+            }
         }
-        return legalMoves;
     }
 
     /** Return true iff the game is over (either player has all his
@@ -265,9 +365,40 @@ class Board {
         return winner() != null;
     }
 
-    /** Return true iff SIDE's pieces are continguous. */
+    /** Return true iff SIDE's pieces are continguous.  A single connected
+     *  group has Euler number 1 - (number of holes) <= 1, so the pieces
+     *  are only flooded (on their bitboard, without computing regions)
+     *  when the Euler number permits it. */
     boolean piecesContiguous(Piece side) {
-        return getRegionSizes(side).size() == 1;
+        if (_euler4[side.ordinal()] > 4) {
+            return false;
+        }
+        long pieces = _pieceBits[side.ordinal()];
+        return pieces != 0 && BitBoards.connected(pieces);
+    }
+
+    /** Return a bitboard of SIDE's pieces, in which bit S.index() is set
+     *  iff SIDE occupies square S. */
+    long pieceBits(Piece side) {
+        return _pieceBits[side.ordinal()];
+    }
+
+    /** Return the total score of my local patterns in the tables of
+     *  PatternTables.get(), positive if it favours white. */
+    int patternScore() {
+        return _patternScore;
+    }
+
+    /** Return the number of SIDE's pieces on the board. */
+    int pieceCount(Piece side) {
+        return Long.bitCount(_pieceBits[side.ordinal()]);
+    }
+
+    /** Return the Euler number (number of 8-connected groups minus
+     *  number of holes) of SIDE's pieces, as maintained from the counts of
+     *  2x2 quads. */
+    int eulerNumber(Piece side) {
+        return _euler4[side.ordinal()] / 4;
     }
 
     /** Return the winning side, if any.  If the game is not over, result is
@@ -335,6 +466,50 @@ class Board {
         return out.toString();
     }
 
+    /** Set the square with index INDEX to V, updating the quad counts and
+     *  bitboards of the sides that lose or gain a piece there. */
+    private void put(int index, Piece v) {
+        Piece old = _board[index];
+        if (old == v) {
+            return;
+        }
+        _patternScore += PATTERNS.change(_windows, _lines, index,
+                                         PatternTables.code(old),
+                                         PatternTables.code(v));
+        if (old != null && old != EMP) {
+            toggleQuads(old.ordinal(), index);
+            if (_accumulator != null) {
+                _accumulator.add(old.ordinal(), index, -1);
+            }
+        }
+        if (v != EMP) {
+            toggleQuads(v.ordinal(), index);
+            if (_accumulator != null) {
+                _accumulator.add(v.ordinal(), index, 1);
+            }
+        }
+        _board[index] = v;
+    }
+
+    /** Flip the occupancy of the square with index INDEX in the four
+     *  quads of side SIDE that contain it, adjusting _euler4[SIDE], and in
+     *  SIDE's bitboard. */
+    private void toggleQuads(int side, int index) {
+        _pieceBits[side] ^= 1L << index;
+        byte[] quads = _quads[side];
+        int[] cellQuads = CELL_QUADS[index];
+        int[] cellBits = CELL_BITS[index];
+        int delta = 0;
+        for (int k = 0; k < cellQuads.length; k++) {
+            int q = cellQuads[k];
+            int before = quads[q];
+            int after = before ^ cellBits[k];
+            delta += EULER_DELTA[after] - EULER_DELTA[before];
+            quads[q] = (byte) after;
+        }
+        _euler4[side] += delta;
+    }
+
     /** Return true if a move from FROM to TO is blocked by an opposing
      *  piece or by a friendly piece on the target square. */
     private boolean blocked(Square from, Square to) {
@@ -385,6 +560,7 @@ class Board {
         if (_subsetsInitialized) {
             return;
         }
+        FlightEvents.BoardOperation event = sampleOperation("computeRegions");
         _whiteRegionSizes.clear();
         _blackRegionSizes.clear();
         boolean[][] visited1 = new boolean[8][8];
@@ -403,6 +579,26 @@ class Board {
         Collections.sort(_whiteRegionSizes, Collections.reverseOrder());
         Collections.sort(_blackRegionSizes, Collections.reverseOrder());
         _subsetsInitialized = true;
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    /** Return a started flight-recorder event timing a call of OPERATION,
+     *  if it is one of the calls sampled and the event is enabled, and
+     *  otherwise null. */
+    private FlightEvents.BoardOperation sampleOperation(String operation) {
+        _operationCalls += 1;
+        if (_operationCalls % FlightEvents.SAMPLE_PERIOD != 0) {
+            return null;
+        }
+        FlightEvents.BoardOperation event = new FlightEvents.BoardOperation();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.operation = operation;
+        event.begin();
+        return event;
     }
 
     /** Return the sizes of all the regions in the current union-find
@@ -416,65 +612,6 @@ class Board {
         }
     }
 
-    /** Calculate position for COM of piece.
-     *
-     * @param p is current Side.
-     * @return
-     */
-    double[] getCenterOfMass(Piece p) {
-        double xPos = 0;
-        double yPos = 0;
-        int count = 0;
-        for (Square s: ALL_SQUARES) {
-            int index = s.col() + (8 * s.row());
-            if (_board[index] == p) {
-                xPos += s.row();
-                yPos += s.col();
-                count++;
-            }
-        }
-        double toRet = min(xPos, yPos);
-        double axis;
-        if (toRet == xPos) {
-            axis = 0;
-        } else {
-            axis = 1;
-        }
-        return new double[]{toRet, axis, count};
-    }
-
-    /** Determines avg distance of pieces to their
-     * center of mass.
-     * @return
-     */
-    double[] avgDistanceToCOM() {
-        double[] whites = getCenterOfMass(WP);
-        double[] blacks = getCenterOfMass(BP);
-        double whiteDist = 0;
-        double blackDist = 0;
-        for (Square s: ALL_SQUARES) {
-            int index = s.col() + (8 * s.row());
-            if (_board[index] == WP) {
-                if (whites[1] == 1) {
-                    whiteDist += s.distance(whites[0], s.col());
-                } else {
-                    whiteDist += s.distance(s.row(), whites[0]);
-                }
-
-            } else if (_board[index] == BP) {
-                if (blacks[1] == 1) {
-                    blackDist += s.distance(blacks[0], s.col());
-                } else {
-                    blackDist += s.distance(s.row(), blacks[0]);
-                }
-            }
-        }
-        blackDist /= blacks[2];
-        whiteDist /= whites[2];
-        return new double[] {blackDist, whiteDist};
-    }
-
-
     /** The standard initial configuration for Lines of Action (bottom row
      *  first). */
     static final Piece[][] INITIAL_PIECES = {
@@ -488,6 +625,52 @@ class Board {
         { EMP, BP,  BP,  BP,  BP,  BP,  BP,  EMP }
     };
 
+    /** Number of 2x2 quads covering the board, including the quads that
+     *  hang over its edges.  Quad (qc, qr) covers columns qc - 1 and qc
+     *  and rows qr - 1 and qr, and has index qc + qr * (BOARD_SIZE + 1). */
+    private static final int NUM_QUADS = (BOARD_SIZE + 1) * (BOARD_SIZE + 1);
+
+    /** Tables scoring local patterns of pieces. */
+    private static final PatternTables PATTERNS = PatternTables.get();
+
+    /** CELL_QUADS[S] lists the indices of the four quads containing the
+     *  square with index S, and CELL_BITS[S][k] is the bit that S occupies
+     *  in the mask of quad CELL_QUADS[S][k]. */
+    private static final int[][]
+        CELL_QUADS = new int[NUM_SQUARES][4],
+        CELL_BITS = new int[NUM_SQUARES][4];
+
+    /** Four times the contribution of a quad with a given occupancy mask to
+     *  the 8-connected Euler number: +1 for one occupied cell, -1 for
+     *  three, and -2 for two diagonally opposite cells. */
+    private static final int[] EULER_DELTA = new int[16];
+
+    static {
+        for (Square s : ALL_SQUARES) {
+            for (int k = 0; k < 4; k++) {
+                int dc = k & 1, dr = k >> 1;
+                CELL_QUADS[s.index()][k] =
+                    s.col() + dc + (s.row() + dr) * (BOARD_SIZE + 1);
+                CELL_BITS[s.index()][k] = 1 << ((1 - dc) + 2 * (1 - dr));
+            }
+        }
+        for (int mask = 0; mask < EULER_DELTA.length; mask++) {
+            switch (Integer.bitCount(mask)) {
+            case 1:
+                EULER_DELTA[mask] = 1;
+                break;
+            case 3:
+                EULER_DELTA[mask] = -1;
+                break;
+            case 2:
+                EULER_DELTA[mask] = mask == 0b1001 || mask == 0b0110 ? -2 : 0;
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
     /** Current contents of the board.  Square S is at _board[S.index()]. */
     private final Piece[] _board = new Piece[BOARD_SIZE  * BOARD_SIZE];
 
@@ -503,6 +686,35 @@ class Board {
      *  in progress).  Use only if _winnerKnown. */
     private Piece _winner;
 
+    /** For each side (by ordinal) and quad, a four-bit mask of the cells
+     *  of the quad that side occupies. */
+    private final byte[][] _quads = new byte[2][NUM_QUADS];
+
+    /** For each side (by ordinal), four times the Euler number of its
+     *  pieces, updated incrementally as squares change. */
+    private final int[] _euler4 = new int[2];
+
+    /** For each side (by ordinal), the bitboard returned by pieceBits. */
+    private final long[] _pieceBits = new long[2];
+
+    /** Scratch space for the targets of one piece in addMoves. */
+    private final int[] _targets = new int[8];
+
+    /** Indices of my windows and lines in the pattern tables. */
+    private final int[] _windows = new int[PatternTables.NUM_WINDOWS],
+        _lines = new int[PatternTables.NUM_LINES];
+
+    /** Total score of my patterns, updated incrementally as squares
+     *  change. */
+    private int _patternScore = PATTERNS.emptyScore();
+
+    /** Sums of the hidden units of the network I evaluate with, updated
+     *  incrementally as squares change, or null if none. */
+    private Network.Accumulator _accumulator;
+
+    /** Number of calls of operations sampled by sampleOperation. */
+    private int _operationCalls;
+
     /** True iff subsets computation is up-to-date. */
     private boolean _subsetsInitialized;
 
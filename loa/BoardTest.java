@@ -2,6 +2,10 @@
  * University of California.  All rights reserved. */
 package loa;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -85,6 +89,45 @@ public class BoardTest {
         assertFalse("b1-b4", b.isLegal(mv("b1-b4")));
     }
 
+    /** Test that the moves generated from the ray tables are exactly
+     *  those isLegal accepts, in random games. */
+    @Test
+    public void testLegalMoves1() {
+        Random rand = new Random(39);
+        for (int game = 0; game < 200; game += 1) {
+            Board b = new Board();
+            while (!b.gameOver()) {
+                List<Move> expected = new ArrayList<>();
+                List<Move> captures = new ArrayList<>();
+                for (Square from : Square.ALL_SQUARES) {
+                    for (Square to : Square.ALL_SQUARES) {
+                        if (b.get(from) == b.turn() && b.isLegal(from, to)) {
+                            expected.add(mv(from, to));
+                            if (b.get(to) == b.turn().opposite()) {
+                                captures.add(mv(from, to));
+                            }
+                        }
+                    }
+                }
+                List<Move> moves = b.legalMoves();
+                assertEquals("all moves", expected, moves);
+                List<Move> generated = new ArrayList<>();
+                b.addMoves(generated, Board.CAPTURES);
+                assertEquals("captures", captures, generated);
+                b.addMoves(generated, Board.QUIET_MOVES);
+                assertEquals("captures and quiet moves", expected.size(),
+                             generated.size());
+                for (Move move : expected) {
+                    assertTrue("generates " + move, b.generates(move));
+                }
+                if (moves.isEmpty()) {
+                    break;
+                }
+                b.makeMove(moves.get(rand.nextInt(moves.size())));
+            }
+        }
+    }
+
     /** Test contiguity. */
     @Test
     public void testContiguous1() {
@@ -102,6 +145,83 @@ public class BoardTest {
         assertTrue("Board 3 game over", b2.gameOver());
     }
 
+    /** Test the incrementally maintained Euler numbers. */
+    @Test
+    public void testEuler1() {
+        Board b = new Board();
+        assertEquals("initial black groups", 2, b.eulerNumber(BP));
+        assertEquals("initial white groups", 2, b.eulerNumber(WP));
+        Board b2 = new Board(BOARD2, BP);
+        assertTrue("Board 2 black Euler number", b2.eulerNumber(BP) <= 1);
+        Random rand = new Random(42);
+        for (int i = 0; i < 40 && !b.legalMoves().isEmpty(); i += 1) {
+            List<Move> moves = b.legalMoves();
+            b.makeMove(moves.get(rand.nextInt(moves.size())));
+            Board fresh = new Board(b);
+            fresh.initialize(contents(b), b.turn());
+            for (Piece side : new Piece[] { BP, WP }) {
+                assertEquals("incremental Euler number",
+                             fresh.eulerNumber(side), b.eulerNumber(side));
+                assertEquals("bitboard Euler number", b.eulerNumber(side),
+                             BatchEvaluator.euler(b.pieceBits(side)));
+                assertEquals("contiguity",
+                             b.getRegionSizes(side).size() == 1,
+                             b.piecesContiguous(side));
+            }
+        }
+        while (b.movesMade() > 0) {
+            b.retract();
+        }
+        assertEquals("black after retraction", 2, b.eulerNumber(BP));
+        assertEquals("white after retraction", 2, b.eulerNumber(WP));
+    }
+
+    /** Test that the pattern score kept as moves are made and retracted
+     *  agrees with the pattern indices computed afresh. */
+    @Test
+    public void testPatterns1() {
+        Random random = new Random(3);
+        PatternTables tables = PatternTables.get();
+        Board b = new Board(BOARD1, BP);
+        for (int k = 0; k < 40 && !b.gameOver(); k += 1) {
+            List<Move> moves = b.legalMoves();
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            if (k % 3 == 2) {
+                b.retract();
+            }
+            int[] windows = new int[PatternTables.NUM_WINDOWS],
+                lines = new int[PatternTables.NUM_LINES];
+            for (int r = 0; r < 8; r += 1) {
+                for (int c = 0; c < 8; c += 1) {
+                    int code = PatternTables.code(b.get(sq(c, r)));
+                    lines[r] += code * (int) Math.pow(3, c);
+                    lines[8 + c] += code * (int) Math.pow(3, r);
+                    for (int dr = -1; dr <= 1; dr += 1) {
+                        for (int dc = -1; dc <= 1; dc += 1) {
+                            if (Square.exists(c - dc, r - dr)) {
+                                windows[(r - dr) * 8 + c - dc] += code
+                                    * (int) Math.pow(3, 3 * dr + dc + 4);
+                            }
+                        }
+                    }
+                }
+            }
+            assertEquals("pattern score", tables.score(windows, lines),
+                         b.patternScore());
+        }
+    }
+
+    /** Return the contents of B as an array suitable for Board.initialize. */
+    static Piece[][] contents(Board b) {
+        Piece[][] result = new Piece[8][8];
+        for (int r = 0; r < 8; r += 1) {
+            for (int c = 0; c < 8; c += 1) {
+                result[r][c] = b.get(sq(c, r));
+            }
+        }
+        return result;
+    }
+
     @Test
     public void testEquals1() {
         Board b1 = new Board(BOARD1, BP);
@@ -5,16 +5,24 @@ package loa;
 import ucb.gui2.Pad;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.event.MouseEvent;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import static loa.Piece.*;
 import static loa.Square.sq;
 
-/** A widget that displays a Loa game.
+/** A widget that displays a Loa game.  The game's thread posts changes
+ *  with update, which never waits for the display: each update records
+ *  the squares that changed since the last one in a pending frame, merged
+ *  with any frame not yet shown, and the event-dispatch thread applies
+ *  the pending frame at most once every FRAME_MILLIS, repainting only the
+ *  changed squares.
  *  @author Shivang Singh
  */
 class BoardWidget extends Pad {
@@ -49,6 +57,9 @@ class BoardWidget extends Pad {
     static final int PIECE_OFFSET =
         (int) Math.round(0.5 * (SQUARE_SIDE - PIECE_SIZE));
 
+    /** Minimum time between displayed frames (ms). */
+    static final int FRAME_MILLIS = 16;
+
     /** Strokes to provide boundary around board and outline of piece. */
     static final BasicStroke
         BORDER_STROKE = new BasicStroke(BORDER_WIDTH, BasicStroke.CAP_ROUND,
@@ -63,6 +74,9 @@ class BoardWidget extends Pad {
         setMouseHandler("release", this::mouseAction);
         setPreferredSize(BOARD_SIDE, BOARD_SIDE);
         _acceptingMoves = false;
+        _postedBlack = _board.pieceBits(BP);
+        _postedWhite = _board.pieceBits(WP);
+        _postedTurn = _board.turn();
     }
 
     /** Draw the bare board G.  */
@@ -88,7 +102,7 @@ class BoardWidget extends Pad {
     }
 
     @Override
-    public synchronized void paintComponent(Graphics2D g) {
+    public void paintComponent(Graphics2D g) {
         drawGrid(g);
         for (Square sq : Square.ALL_SQUARES) {
             drawPiece(g, sq);
@@ -155,11 +169,83 @@ class BoardWidget extends Pad {
         }
     }
 
-    /** Revise the displayed board according to BOARD. */
-    synchronized void update(Board board) {
-        _board.copyFrom(board);
+    /** Revise the displayed board according to BOARD, at the next frame.
+     *  Called only from the game's thread. */
+    void update(Board board) {
+        long black = board.pieceBits(BP), white = board.pieceBits(WP);
+        long changed = (black ^ _postedBlack) | (white ^ _postedWhite);
+        Piece turn = board.turn();
+        if (changed == 0 && turn == _postedTurn) {
+            return;
+        }
+        _postedBlack = black;
+        _postedWhite = white;
+        _postedTurn = turn;
+        Frame frame = new Frame(changed, black, white, turn);
+        Frame old;
+        do {
+            old = _pending.get();
+        } while (!_pending.compareAndSet(old, old == null ? frame
+                                        : frame.after(old)));
+        if (old == null) {
+            long wait = _lastFrame + FRAME_MILLIS - System.currentTimeMillis();
+            if (wait <= 0) {
+                SwingUtilities.invokeLater(this::showPending);
+            } else {
+                Timer timer = new Timer((int) wait, (e) -> showPending());
+                timer.setRepeats(false);
+                timer.start();
+            }
+        }
+    }
 
-        repaint();
+    /** Apply the pending frame to the displayed board, repainting the
+     *  squares it changes.  Called on the event-dispatch thread. */
+    private void showPending() {
+        Frame frame = _pending.getAndSet(null);
+        if (frame == null) {
+            return;
+        }
+        _lastFrame = System.currentTimeMillis();
+        if (frame._changed == 0) {
+            Square s = Square.ALL_SQUARES[0];
+            _board.set(s, _board.get(s), frame._turn);
+        }
+        for (long bits = frame._changed; bits != 0; bits &= bits - 1) {
+            int index = Long.numberOfTrailingZeros(bits);
+            long bit = 1L << index;
+            Piece p = (frame._black & bit) != 0 ? BP
+                : (frame._white & bit) != 0 ? WP : EMP;
+            Square s = Square.ALL_SQUARES[index];
+            _board.set(s, p, frame._turn);
+            repaint(cx(s), cy(s), SQUARE_SIDE, SQUARE_SIDE);
+        }
+    }
+
+    /** The changes to the displayed board since the last frame shown. */
+    private static final class Frame {
+
+        /** A frame changing the squares in the bitboard CHANGED to their
+         *  contents in BLACK and WHITE, with TURN to move. */
+        Frame(long changed, long black, long white, Piece turn) {
+            _changed = changed;
+            _black = black;
+            _white = white;
+            _turn = turn;
+        }
+
+        /** Return a frame making the changes of OLDER and then mine. */
+        Frame after(Frame older) {
+            return new Frame(older._changed | _changed, _black, _white,
+                             _turn);
+        }
+
+        /** Bitboard of the squares changed. */
+        private final long _changed;
+        /** Bitboards of the black and white pieces after the changes. */
+        private final long _black, _white;
+        /** Side to move after the changes. */
+        private final Piece _turn;
     }
 
     /** Turn on move collection iff COLLECTING, and clear any current
@@ -199,9 +285,19 @@ class BoardWidget extends Pad {
 
     /** Queue on which to post move commands (from mouse clicks). */
     private ArrayBlockingQueue<String> _commands;
-    /** Board being displayed. */
+    /** Board being displayed, used only on the event-dispatch thread. */
     private final Board _board = new Board();
 
+    /** Changes posted by update and not yet shown, or null. */
+    private final AtomicReference<Frame> _pending = new AtomicReference<>();
+    /** The pieces and side to move posted by the last update.  Used only
+     *  by the game's thread. */
+    private long _postedBlack, _postedWhite;
+    /** Side to move posted by the last update. */
+    private Piece _postedTurn;
+    /** Time (ms) at which the last frame was shown. */
+    private volatile long _lastFrame;
+
     /** True iff accepting moves from user. */
     private boolean _acceptingMoves;
 
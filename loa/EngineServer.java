@@ -0,0 +1,140 @@
+package loa;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** A server that hosts many concurrent games in one JVM.  Each connection
+ *  on a local socket is one game, driven by the same text commands that
+ *  the standalone program reads from its standard input.  Connections are
+ *  handled one thread each (virtual threads when the JVM provides them),
+ *  while the searches of automated players run on a shared, bounded pool
+ *  of engine threads, and the helpers of multi-threaded searches on a
+ *  second pool of the same size.
+ *  @author Shivang Singh
+ */
+class EngineServer {
+
+    /** Default port on which to listen. */
+    static final int DEFAULT_PORT = 6061;
+
+    /** A server listening on PORT of the loopback interface that runs at
+     *  most ENGINETHREADS searches at once. */
+    EngineServer(int port, int engineThreads) {
+        _port = port;
+        _engines = Executors.newFixedThreadPool(engineThreads);
+        _helpers = Executors.newFixedThreadPool(engineThreads, task -> {
+            Thread thread = new Thread(task, "loa-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _connections = connectionExecutor();
+    }
+
+    /** Accept connections until the listening socket fails, starting a
+     *  game session for each. */
+    void serve() throws IOException {
+        try (ServerSocket listener =
+             new ServerSocket(_port, 0, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket client = listener.accept();
+                _connections.execute(() -> serveClient(client));
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    /** Stop accepting searches and connections. */
+    void shutdown() {
+        _engines.shutdownNow();
+        _helpers.shutdownNow();
+        _connections.shutdownNow();
+    }
+
+    /** Run a game session on CLIENT until it quits or disconnects. */
+    private void serveClient(Socket client) {
+        try (Socket socket = client) {
+            new EngineSession(socket.getInputStream(),
+                              socket.getOutputStream(), this).play();
+        } catch (IOException excp) {
+            Utils.debug(1, "connection closed: %s", excp.getMessage());
+        }
+    }
+
+    /** Return the move chosen by ENGINE for the side to move in BOARD,
+     *  searching on one of the engine threads.  Returns null if the calling
+     *  thread is interrupted while waiting. */
+    Move search(SearchEngine engine, Board board) {
+        Future<Move> result =
+            _engines.submit(() -> engine.searchForMove(board));
+        try {
+            return result.get();
+        } catch (InterruptedException excp) {
+            engine.stop();
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        }
+    }
+
+    /** Run TASK on one of the engine threads, returning its Future. */
+    Future<?> submit(Runnable task) {
+        return _engines.submit(task);
+    }
+
+    /** Return the pool on which the helper threads of multi-threaded
+     *  searches run. */
+    ExecutorService helpers() {
+        return _helpers;
+    }
+
+    /** Return an executor that runs each task on a new virtual thread if
+     *  this JVM supports them, and otherwise on a new platform thread. */
+    static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /** Run a server.  ARGS may give the port and the number of engine
+     *  threads, which defaults to the number of available processors.
+     *  With -Dloa.warmup=true, first runs the warm-up searches.  Exports
+     *  metrics as requested by the properties described in Metrics. */
+    public static void main(String... args) throws IOException {
+        int port = DEFAULT_PORT;
+        int engineThreads = Runtime.getRuntime().availableProcessors();
+        try {
+            if (args.length > 0) {
+                port = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1) {
+                engineThreads = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException excp) {
+            Utils.error(1, "Usage: java loa.EngineServer [PORT [THREADS]]%n");
+        }
+        Warmup.launch(System.err);
+        Metrics.startExport();
+        new EngineServer(port, engineThreads).serve();
+    }
+
+    /** Port on which I listen. */
+    private final int _port;
+    /** Bounded pool of threads on which searches run. */
+    private final ExecutorService _engines;
+    /** Bounded pool of threads on which search helpers run. */
+    private final ExecutorService _helpers;
+    /** Executor running one session per connection. */
+    private final ExecutorService _connections;
+}
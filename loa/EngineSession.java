@@ -0,0 +1,520 @@
+package loa;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static loa.Piece.*;
+
+/** One game hosted by an EngineServer.  A session reads the text commands
+ *  described in HelpText.txt from its connection and writes the board
+ *  dumps, moves and results that the standalone program would print.  Its
+ *  state is just the board, which sides are automated, and the seed.
+ *
+ *  For match drivers, a session also accepts "go" with the limits
+ *  understood by SearchLimits.parse.  The search runs in the background,
+ *  writing "info depth D score S nodes N nps R time T pv M..." after each
+ *  iteration (S favours the side to move), "info nodes N nps R time T"
+ *  periodically, and finally "bestmove M".  It does not make the move.
+ *  With "multipv N", each iteration writes N lines "info depth D multipv
+ *  K score S ...", one for each of the N best moves.
+ *  "stop" ends the search early, as do "quit" and the commands that
+ *  change the position, sides, seed or engine; any other command waits
+ *  for it.
+ *  Likewise "bench [DEPTH]" runs the fixed benchmark of Bench, and "solve
+ *  [MOVES] [NODES]" asks ProofSolver whether the side to move can force a
+ *  win within MOVES of its moves, both in the background.  "trace [FILE]"
+ *  dumps the engine's search trace (see SearchTrace).
+ *  @author Shivang Singh
+ */
+class EngineSession implements SearchListener {
+
+    /** A session reading commands from IN and writing to OUT, whose
+     *  automated players search using SERVER. */
+    EngineSession(InputStream in, OutputStream out, EngineServer server) {
+        _input = new BufferedReader(new InputStreamReader(in));
+        PrintStream output = new PrintStream(out, true);
+        _out = output;
+        _reporter = new TextReporter(output, output);
+        _server = server;
+    }
+
+    /** Execute commands until "quit" or the end of the input. */
+    void play() throws IOException {
+        try {
+            while (true) {
+                String line = _input.readLine();
+                if (line == null) {
+                    return;
+                }
+                line = line.trim();
+                if (line.equalsIgnoreCase("stop")) {
+                    stopSearch();
+                    continue;
+                }
+                if (!waitsForSearch(line)) {
+                    stopSearch();
+                }
+                awaitSearch();
+                if (!execute(line)) {
+                    return;
+                }
+                playAutomatedMoves();
+            }
+        } finally {
+            stopSearch();
+        }
+    }
+
+    /** Return true iff the command in LINE lets a background search
+     *  finish before it executes, rather than stopping it. */
+    private static boolean waitsForSearch(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return true;
+        }
+        switch (line.split("\\s+")[0].toLowerCase()) {
+        case "dump": case "help": case "?": case "go": case "option":
+        case "bench": case "metrics": case "solve": case "trace":
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Execute the command in LINE.  Return false iff it ends the
+     *  session. */
+    private boolean execute(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return true;
+        }
+        String[] words = line.split("\\s+");
+        switch (words[0].toLowerCase()) {
+        case "quit":
+            return false;
+        case "new":
+            _board.clear();
+            break;
+        case "dump":
+            _out.println(_board);
+            break;
+        case "help": case "?":
+            _reporter.reportNote("%s", HELP);
+            break;
+        case "auto": case "manual":
+            setAuto(words, words[0].equalsIgnoreCase("auto"));
+            break;
+        case "seed":
+            setSeed(words);
+            break;
+        case "limit":
+            setLimit(words);
+            break;
+        case "set":
+            setSquare(words);
+            break;
+        case "go":
+            startSearch(words);
+            break;
+        case "engine":
+            setEngine(words);
+            break;
+        case "option":
+            setOption(words);
+            break;
+        case "bench":
+            startBench(words);
+            break;
+        case "metrics":
+            _reporter.reportNote("%s", Metrics.REGISTRY.summary());
+            break;
+        case "solve":
+            startSolve(words);
+            break;
+        case "trace":
+            dumpTrace(words);
+            break;
+        default:
+            makeMove(words[0]);
+            break;
+        }
+        return true;
+    }
+
+    /** Make the side named in WORDS[1] automated iff AUTO. */
+    private void setAuto(String[] words, boolean auto) {
+        Piece side = words.length == 2 ? playerNamed(words[1]) : null;
+        if (side == null) {
+            _reporter.reportError("usage: %s white|black", words[0]);
+        } else if (side == WP) {
+            _autoWhite = auto;
+        } else {
+            _autoBlack = auto;
+        }
+    }
+
+    /** Set the random seed to WORDS[1]. */
+    private void setSeed(String[] words) {
+        try {
+            _seed = Long.parseLong(words[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            _reporter.reportError("usage: seed N");
+        }
+    }
+
+    /** Choose the engine named in WORDS: "alphabeta", or "mcts" with an
+     *  optional number of threads.  The engine is seeded with the current
+     *  seed. */
+    private void setEngine(String[] words) {
+        try {
+            switch (words[1].toLowerCase()) {
+            case "alphabeta":
+                _engine = new MachinePlayer();
+                break;
+            case "mcts":
+                int threads =
+                    words.length > 2 ? Integer.parseInt(words[2]) : 1;
+                if (threads < 1) {
+                    throw new IllegalArgumentException();
+                }
+                _engine = new MctsPlayer(null, null, threads, _seed,
+                                         _server.helpers());
+                break;
+            default:
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException e) {
+            _reporter.reportError("usage: engine alphabeta|mcts [THREADS]");
+        }
+    }
+
+    /** Set the engine option WORDS[1] to WORDS[2] ("on" or "off"). */
+    private void setOption(String[] words) {
+        if (words.length != 3
+            || !words[2].matches("(?i)on|off")) {
+            _reporter.reportError("usage: option NAME on|off");
+            return;
+        }
+        try {
+            _engine.setOption(words[1], words[2].equalsIgnoreCase("on"));
+        } catch (IllegalArgumentException excp) {
+            _reporter.reportError("%s", excp.getMessage());
+        }
+    }
+
+    /** Set the move limit to WORDS[1]. */
+    private void setLimit(String[] words) {
+        try {
+            _board.setMoveLimit(Integer.parseInt(words[1]));
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException e) {
+            _reporter.reportError("usage: limit N, with N > moves made");
+        }
+    }
+
+    /** Handle "set cr P N", as described in WORDS. */
+    private void setSquare(String[] words) {
+        Square sq = words.length == 4 ? Square.sq(words[1]) : null;
+        try {
+            Piece contents = Piece.playerValueOf(words[2]);
+            Piece next = playerNamed(words[3]);
+            if (sq == null || next == null) {
+                throw new IllegalArgumentException();
+            }
+            _board.set(sq, contents, next);
+        } catch (IllegalArgumentException
+                 | ArrayIndexOutOfBoundsException e) {
+            _reporter.reportError("usage: set cr P N");
+        }
+    }
+
+    /** Make the move denoted by MOVE for the side to move. */
+    private void makeMove(String move) {
+        Move mv = Move.mv(move);
+        if (mv == null) {
+            _reporter.reportError("unknown command: %s", move);
+        } else if (_board.gameOver() || !_board.isLegal(mv)) {
+            _reporter.reportError("illegal move: %s", move);
+        } else {
+            _board.makeMove(mv);
+            announceWinner();
+        }
+    }
+
+    /** Start a background search of the current position with the limits
+     *  given by the "go" command in WORDS. */
+    private void startSearch(String[] words) {
+        SearchLimits limits;
+        try {
+            limits = SearchLimits.parse(words);
+        } catch (IllegalArgumentException excp) {
+            _reporter.reportError("bad go command: %s", excp.getMessage());
+            return;
+        }
+        if (_board.gameOver()) {
+            _reporter.reportError("game is over");
+            return;
+        }
+        Board position = new Board(_board);
+        SearchEngine searcher = _engine;
+        _sense = position.turn() == WP ? 1 : -1;
+        _limits = limits;
+        _search = _server.submit(() -> {
+            Move best = searcher.searchForMove(position, limits, this);
+            _out.printf("bestmove %s%n", best);
+        });
+    }
+
+    /** Start the benchmark in the background, searching to the depth
+     *  given in WORDS[1] (at least 1; default Bench.DEFAULT_DEPTH) with
+     *  the current engine, which must be a MachinePlayer. */
+    private void startBench(String[] words) {
+        int depth;
+        try {
+            depth = words.length > 1
+                ? Integer.parseInt(words[1]) : Bench.DEFAULT_DEPTH;
+            if (depth < 1) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException excp) {
+            _reporter.reportError("usage: bench [DEPTH]");
+            return;
+        }
+        if (!(_engine instanceof MachinePlayer)) {
+            _reporter.reportError("bench needs the alphabeta engine");
+            return;
+        }
+        MachinePlayer searcher = (MachinePlayer) _engine;
+        SearchLimits limits = SearchLimits.depth(depth);
+        _limits = limits;
+        _search = _server.submit(() -> Bench.run(searcher, limits, _out));
+    }
+
+    /** Start trying, in the background, to prove a forced win for the
+     *  side to move within the number of its moves given by WORDS[1]
+     *  (default SOLVE_MOVES), visiting at most WORDS[2] positions (default
+     *  SOLVE_NODES).  The outcome is reported when the solve ends. */
+    private void startSolve(String[] words) {
+        int moves;
+        long nodes;
+        try {
+            moves = words.length > 1
+                ? Integer.parseInt(words[1]) : SOLVE_MOVES;
+            nodes = words.length > 2
+                ? Long.parseLong(words[2]) : SOLVE_NODES;
+        } catch (NumberFormatException excp) {
+            _reporter.reportError("usage: solve [MOVES] [NODES]");
+            return;
+        }
+        if (_board.gameOver()) {
+            _reporter.reportError("game is over");
+            return;
+        }
+        ProofSolver solver = new ProofSolver();
+        Board position = new Board(_board);
+        _solver = solver;
+        _search = _server.submit(() -> solve(solver, position, moves, nodes));
+    }
+
+    /** Use SOLVER to try to prove a forced win for the side to move in
+     *  POSITION within MOVES of its moves, visiting at most NODES
+     *  positions, and report the outcome. */
+    private void solve(ProofSolver solver, Board position, int moves,
+                       long nodes) {
+        String side = position.turn().fullName();
+        long start = System.currentTimeMillis();
+        int result = solver.solve(position, moves, nodes);
+        long millis = System.currentTimeMillis() - start;
+        if (result == ProofSolver.PROVEN) {
+            _reporter.reportNote("%s wins in %d moves with %s "
+                                 + "(nodes %d, time %d)", side,
+                                 solver.movesToWin(), solver.winningMove(),
+                                 solver.nodes(), millis);
+        } else if (result == ProofSolver.DISPROVEN) {
+            _reporter.reportNote("%s has no forced win in %d moves "
+                                 + "(nodes %d, time %d)", side, moves,
+                                 solver.nodes(), millis);
+        } else {
+            _reporter.reportNote("unknown after %d nodes (time %d)",
+                                 solver.nodes(), millis);
+        }
+    }
+
+    /** Dump the current engine's search trace to the file WORDS[1]
+     *  (default: the file named by loa.trace). */
+    private void dumpTrace(String[] words) {
+        String name = words.length > 1 ? words[1]
+            : System.getProperty("loa.trace");
+        if (name == null || words.length > 2) {
+            _reporter.reportError("usage: trace FILE");
+        } else if (!(_engine instanceof MachinePlayer)
+                   || !((MachinePlayer) _engine).dumpTrace(new File(name))) {
+            _reporter.reportError("no search trace (run with -Dloa.trace)");
+        } else {
+            _reporter.reportNote("search trace written to %s", name);
+        }
+    }
+
+    /** Ask the background search or solve, if any, to stop, whether or
+     *  not it has started. */
+    private void stopSearch() {
+        SearchLimits limits = _limits;
+        if (limits != null) {
+            limits.cancel();
+        }
+        ProofSolver solver = _solver;
+        if (solver != null) {
+            solver.stop();
+        }
+    }
+
+    /** Wait for the background search, if any, to finish. */
+    private void awaitSearch() {
+        if (_search == null) {
+            return;
+        }
+        try {
+            _search.get();
+        } catch (InterruptedException excp) {
+            stopSearch();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException excp) {
+            _reporter.reportError("search failed: %s", excp.getCause());
+        }
+        _search = null;
+        _limits = null;
+        _solver = null;
+    }
+
+    @Override
+    public void iterationComplete(int depth, int score, long nodes,
+                                  long millis, List<Move> pv) {
+        StringBuilder line = new StringBuilder();
+        for (Move mv : pv) {
+            line.append(' ').append(mv);
+        }
+        _out.printf("info depth %d score %d nodes %d nps %d time %d pv%s%n",
+                    depth, _sense * score, nodes, nps(nodes, millis),
+                    millis, line);
+    }
+
+    @Override
+    public void lineComplete(int depth, int index, int score, long nodes,
+                             long millis, List<Move> pv) {
+        StringBuilder line = new StringBuilder();
+        for (Move mv : pv) {
+            line.append(' ').append(mv);
+        }
+        _out.printf("info depth %d multipv %d score %d nodes %d nps %d "
+                    + "time %d pv%s%n", depth, index, _sense * score, nodes,
+                    nps(nodes, millis), millis, line);
+    }
+
+    @Override
+    public void progress(long nodes, long millis) {
+        _out.printf("info nodes %d nps %d time %d%n",
+                    nodes, nps(nodes, millis), millis);
+    }
+
+    /** Return the nodes per second for NODES searched in MILLIS ms. */
+    private static long nps(long nodes, long millis) {
+        return nodes * 1000 / Math.max(1, millis);
+    }
+
+    /** Let automated players move until the game ends or a manual player
+     *  is to move. */
+    private void playAutomatedMoves() {
+        while (!_board.gameOver() && isAuto(_board.turn())) {
+            Move mv = _server.search(_engine, _board);
+            if (mv == null) {
+                return;
+            }
+            _board.makeMove(mv);
+            _reporter.reportMove(mv);
+            announceWinner();
+        }
+    }
+
+    /** Report the result of the game, if it has ended. */
+    private void announceWinner() {
+        Piece winner = _board.winner();
+        if (winner != null) {
+            Metrics.REGISTRY.recordGame(winner);
+        }
+        if (winner == EMP) {
+            _reporter.reportNote("Tie game.");
+        } else if (winner != null) {
+            String name = winner.fullName();
+            _reporter.reportNote("%s%s wins.",
+                                 name.substring(0, 1).toUpperCase(),
+                                 name.substring(1));
+        }
+    }
+
+    /** Return true iff SIDE's moves are chosen by the engine. */
+    private boolean isAuto(Piece side) {
+        return side == WP ? _autoWhite : _autoBlack;
+    }
+
+    /** Return the side named NAME (case-insensitive), or null if NAME
+     *  names neither side. */
+    private static Piece playerNamed(String name) {
+        switch (name.toLowerCase()) {
+        case "white":
+            return WP;
+        case "black":
+            return BP;
+        default:
+            return null;
+        }
+    }
+
+    /** Summary of commands, as printed by "help". */
+    private static final String HELP =
+        "commands: uv-xy, new, seed N, auto P, manual P, set cr P N, "
+        + "limit N, dump, go [depth D] [nodes N] [movetime MS] [multipv N] "
+        + "[wtime MS] [btime MS] [winc MS] [binc MS] [movestogo N] "
+        + "[infinite], stop, engine alphabeta|mcts [THREADS], "
+        + "option NAME on|off, bench [DEPTH], solve [MOVES] [NODES], "
+        + "trace [FILE], metrics, quit";
+
+    /** Default number of moves of "solve". */
+    private static final int SOLVE_MOVES = 3;
+    /** Default node budget of "solve". */
+    private static final long SOLVE_NODES = 1000000;
+
+    /** Source of commands. */
+    private final BufferedReader _input;
+    /** Destination of board dumps. */
+    private final PrintStream _out;
+    /** Destination of moves, notes and errors. */
+    private final Reporter _reporter;
+    /** Server providing engine threads. */
+    private final EngineServer _server;
+    /** The game being played. */
+    private final Board _board = new Board();
+    /** True iff the corresponding side is automated.  As in the
+     *  standalone program, white starts automated and black manual. */
+    private boolean _autoWhite = true, _autoBlack;
+    /** Random seed set by the "seed" command. */
+    private long _seed;
+    /** The background search started by "go", "bench" or "solve", or
+     *  null. */
+    private Future<?> _search;
+    /** The limits, and so the cancellation token, of the background
+     *  search, or null. */
+    private volatile SearchLimits _limits;
+    /** The solver of the background solve, or null. */
+    private volatile ProofSolver _solver;
+    /** The engine choosing automated moves. */
+    private SearchEngine _engine = new MachinePlayer();
+    /** 1 if white is to move in the searched position, else -1. */
+    private int _sense;
+}
@@ -0,0 +1,116 @@
+package loa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of EngineSession.
+ *  @author Shivang Singh
+ */
+public class EngineSessionTest {
+
+    /** Test that a session sets up and shows a position, rejects an
+     *  illegal move, answers with an engine move, and reports the result
+     *  of "go". */
+    @Test(timeout = 20000)
+    public void testProtocol() throws Exception {
+        String text = session("manual white\nset b1 - black\ndump\n"
+                              + "b1-b3\nc1-c3\nauto white\n"
+                              + "go depth 1\nquit\n");
+        assertTrue("set and dump", text.contains("    - - b b b b b - \n"));
+        assertTrue("illegal move", text.contains("illegal move: b1-b3"));
+        assertFalse("legal move", text.contains("illegal move: c1-c3"));
+        assertTrue("engine move",
+                   text.matches("(?s).*\\* [a-h][1-8]-[a-h][1-8]\\s.*"));
+        assertTrue("go", text.contains("bestmove "));
+    }
+
+    /** Return the output of a session on a server of its own given the
+     *  commands INPUT. */
+    private static String session(String input) throws Exception {
+        EngineServer server = new EngineServer(0, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EngineSession session = new EngineSession(
+            new ByteArrayInputStream(input.getBytes()), out, server);
+        try {
+            session.play();
+        } finally {
+            server.shutdown();
+        }
+        return out.toString();
+    }
+
+    /** Test that "stop" ends a search that is still waiting for an engine
+     *  thread when it arrives. */
+    @Test(timeout = 20000)
+    public void testStopBeforeStart() throws Exception {
+        EngineServer server = new EngineServer(0, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        server.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EngineSession session = new EngineSession(
+            new ByteArrayInputStream("go infinite\nstop\ndump\nquit\n"
+                                     .getBytes()), out, server);
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException excp) {
+                return;
+            }
+            release.countDown();
+        });
+        releaser.start();
+        try {
+            session.play();
+        } finally {
+            release.countDown();
+            server.shutdown();
+        }
+        assertTrue("bestmove", out.toString().contains("bestmove "));
+    }
+
+    /** Test that "quit" and commands that change the position end an
+     *  unbounded search rather than waiting for it. */
+    @Test(timeout = 20000)
+    public void testQuitStopsSearch() throws Exception {
+        String text = session("go infinite\nnew\ngo infinite\nquit\n");
+        assertEquals("both searches end", 2,
+                     text.split("bestmove ").length - 1);
+    }
+
+    /** Test that "bench" rejects depths below 1, which would not limit
+     *  the search. */
+    @Test(timeout = 20000)
+    public void testBenchDepth() throws Exception {
+        String text = session("bench 0\nbench -1\nquit\n");
+        assertEquals("rejected", 2,
+                     text.split("usage: bench").length - 1);
+        assertFalse("not run", text.contains("bench:"));
+    }
+
+    /** Test that "solve" runs in the background and that "stop" ends
+     *  it. */
+    @Test(timeout = 20000)
+    public void testStopSolve() throws Exception {
+        EngineServer server = new EngineServer(0, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EngineSession session = new EngineSession(
+            new ByteArrayInputStream("solve 20 0\nstop\nquit\n"
+                                     .getBytes()), out, server);
+        try {
+            session.play();
+        } finally {
+            server.shutdown();
+        }
+        assertTrue("stopped", out.toString().contains("unknown after"));
+    }
+}
@@ -0,0 +1,75 @@
+package loa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Java Flight Recorder events emitted by the engine.  All are disabled
+ *  by default; the settings file loa.jfc enables them, as in
+ *      java -XX:StartFlightRecording:settings=default,settings=loa/loa.jfc
+ *  Without a recording, or when disabled, constructing and committing an
+ *  event does nothing.
+ *  @author Shivang Singh
+ */
+final class FlightEvents {
+
+    /** Board operations are timed once in this many calls per Board (a
+     *  power of 2). */
+    static final int SAMPLE_PERIOD = 64;
+
+    /** One completed iteration of MachinePlayer.searchForMove. */
+    @Name("loa.SearchIteration")
+    @Label("Search Iteration")
+    @Category({ "LOA", "Search" })
+    @Description("An iteration of iterative deepening")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SearchIteration extends Event {
+        /** Depth of the iteration. */
+        @Label("Depth")
+        int depth;
+        /** Nodes visited by the search so far. */
+        @Label("Nodes")
+        long nodes;
+        /** Value of the iteration (positive favours white). */
+        @Label("Score")
+        int score;
+    }
+
+    /** The choice of a move for an automated player (Player.getMove). */
+    @Name("loa.MoveRequest")
+    @Label("Move Request")
+    @Category({ "LOA", "Search" })
+    @Description("Time taken by an automated player to choose a move")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class MoveRequest extends Event {
+        /** Class of the engine. */
+        @Label("Engine")
+        String engine;
+        /** Move chosen. */
+        @Label("Move")
+        String move;
+    }
+
+    /** A sampled call of an expensive Board operation. */
+    @Name("loa.BoardOperation")
+    @Label("Board Operation")
+    @Category({ "LOA", "Board" })
+    @Description("A sampled call of Board.legalMoves or computeRegions")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class BoardOperation extends Event {
+        /** Name of the operation. */
+        @Label("Operation")
+        String operation;
+    }
+
+    /** Not instantiable. */
+    private FlightEvents() {
+    }
+}
@@ -9,11 +9,13 @@ import java.awt.Dimension;
 import javax.swing.JEditorPane;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
 
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 
 import static loa.Piece.*;
@@ -21,7 +23,7 @@ import static loa.Piece.*;
 /** The GUI controller for a LOA board and buttons.
  *  @author Shivang Singh
  */
-class GUI extends TopLevel implements View, Reporter {
+class GUI extends TopLevel implements View, Reporter, SearchListener {
 
     /** Minimum size of board in pixels. */
     private static final int MIN_SIZE = 500;
@@ -35,6 +37,9 @@ class GUI extends TopLevel implements View, Reporter {
     /** Resource name of Loa help text. */
     static final String HELP_TEXT = "loa/Help.html";
 
+    /** Minimum time (ms) between displayed search progress reports. */
+    static final long PROGRESS_MILLIS = 250;
+
     /** A new window with given TITLE providing a view of a Loa board. */
     GUI(String title) {
         super(title, true);
@@ -59,15 +64,22 @@ class GUI extends TopLevel implements View, Reporter {
                  new LayoutSpec("x", 0, "y", 0,
                                 "height", 1,
                                 "width", 3));
+        addLabel("", "SearchInfo",
+                 new LayoutSpec("x", 0, "y", 2,
+                                "height", 1,
+                                "width", 3));
+        SearchRunner.DEFAULT.setListener(this);
     }
 
     /** Response to "Quit" button click. */
     private void quit(String dummy) {
+        SearchRunner.DEFAULT.cancel();
         _pendingCommands.offer("quit");
     }
 
     /** Response to "Undo" button click. */
     private void undo(String dummy) {
+        SearchRunner.DEFAULT.cancel();
         _pendingCommands.offer("UNDO");
     }
     /** Make player white an AI.*/
@@ -90,6 +102,7 @@ class GUI extends TopLevel implements View, Reporter {
 
     /** Response to "New Game" button click. */
     private void newGame(String dummy) {
+        SearchRunner.DEFAULT.cancel();
         _pendingCommands.offer("new");
     }
 
@@ -120,6 +133,7 @@ class GUI extends TopLevel implements View, Reporter {
             setLabel("CurrentTurn",
                      String.format("To move: %s", board.turn().fullName()));
         }
+        showProgress("", true);
 
         boolean manualWhite = controller.manualWhite(),
             manualBlack = controller.manualBlack();
@@ -161,6 +175,33 @@ class GUI extends TopLevel implements View, Reporter {
         frame.setVisible(true);
     }
 
+    @Override
+    public void iterationComplete(int depth, int score, long nodes,
+                                  long millis, List<Move> pv) {
+        showProgress(String.format("Thinking: depth %d, best %s, score %d",
+                                   depth, pv.isEmpty() ? "-" : pv.get(0),
+                                   score),
+                     false);
+    }
+
+    @Override
+    public void progress(long nodes, long millis) {
+        showProgress(String.format("Thinking: %d positions in %.1f s",
+                                   nodes, millis / 1000.0),
+                     false);
+    }
+
+    /** Display search progress report TEXT unless another was displayed
+     *  less than PROGRESS_MILLIS ago, or if FORCE.  May be called from
+     *  the engine thread: the label is set on the event thread. */
+    private synchronized void showProgress(String text, boolean force) {
+        long now = System.currentTimeMillis();
+        if (force || now - _lastProgress >= PROGRESS_MILLIS) {
+            _lastProgress = now;
+            SwingUtilities.invokeLater(() -> setLabel("SearchInfo", text));
+        }
+    }
+
     @Override
     public void reportError(String fmt, Object... args) {
         showMessage(String.format(fmt, args), "Loa Error", "error");
@@ -178,6 +219,9 @@ class GUI extends TopLevel implements View, Reporter {
     /** The board widget. */
     private BoardWidget _widget;
 
+    /** Time (ms) at which search progress was last displayed. */
+    private long _lastProgress;
+
     /** Queue of pending commands resulting from menu clicks and moves on the
      *  board.  We use a blocking queue because the responses to clicks
      *  on the board and on menus happen in parallel to the methods that
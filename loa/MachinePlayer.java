@@ -3,6 +3,11 @@
 package loa;
 
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -13,13 +18,75 @@ import static loa.Piece.*;
 /** An automated Player.
  *  @author Shivang Singh
  */
-class MachinePlayer extends Player {
+class MachinePlayer extends Player implements SearchEngine {
 
     /** A position-score magnitude indicating a win (for white if positive,
      *  black if negative). */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
+    static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
+    /** Maximum depth of an iterative-deepening search.  Less than
+     *  INFTY - WINNING_VALUE, so that win values stay below INFTY. */
+    static final int MAX_DEPTH = 16;
+    /** Magnitude of the value of a position won according to the endgame
+     *  tablebase in 0 plies. */
+    private static final int TABLEBASE_WIN = WINNING_VALUE - 1000;
+    /** Values of at least this magnitude are decided: wins found by the
+     *  search or in the tablebase. */
+    static final int DECIDED_VALUE = TABLEBASE_WIN - 1000;
+    /** Endgame tablebase consulted by the search, or null. */
+    private static final Tablebase TABLEBASE = loadTablebase();
+    /** Network evaluating positions in place of the hand-written terms of
+     *  heuristic, or null. */
+    private static final Network NETWORK = loadNetwork();
+    /** Persistent transposition table shared by all searches, or null.
+     *  It holds values from NETWORK if there is one, and otherwise from
+     *  the hand-written terms. */
+    private static final AnalysisCache CACHE = loadCache();
+    /** Multiplier distinguishing the cache keys of positions by the number
+     *  of moves left before the move limit. */
+    private static final long MOVES_LEFT_KEY = 0xC2B2AE3D27D4EB4FL;
+    /** Depth reduction of the search after a null move. */
+    private static final int NULL_MOVE_REDUCTION = 2;
+    /** Minimum remaining depth at which null moves are tried. */
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    /** Minimum remaining depth at which late moves are reduced. */
+    private static final int LMR_MIN_DEPTH = 3;
+    /** Number of moves searched to full depth before reductions start. */
+    private static final int LMR_FULL_MOVES = 3;
+    /** Rank from which late moves are reduced by two plies. */
+    private static final int LMR_DEEP_RANK = 10;
+    /** Margin by which the static value must miss the window at a
+     *  frontier node for its quiet moves to be pruned. */
+    private static final int FUTILITY_MARGIN = 150;
+    /** A side with at most this many pieces outside its largest group may
+     *  be close to connecting, which makes null moves and futility pruning
+     *  unsafe.  (Each side starts with two groups of six.) */
+    private static final int THREAT_STRAGGLERS = 2;
+    /** Number of killer moves kept per ply. */
+    private static final int NUM_KILLERS = 2;
+    /** Search limits are checked once every CHECK_MASK + 1 nodes. */
+    private static final int CHECK_MASK = 1023;
+    /** Time (ms) between progress reports to a SearchListener. */
+    private static final long PROGRESS_INTERVAL = 1000;
+    /** Number of its moves within which the proof-number solver looks for
+     *  a forced win of the side to move, and its node budget. */
+    private static final int SOLVER_MOVES = 3, SOLVER_NODES = 20000;
+    /** Log2 of the number of entries in the solver's table. */
+    private static final int SOLVER_TABLE_BITS = 16;
+    /** File to which search traces are dumped, or null if searches are
+     *  not traced. */
+    private static final String TRACE_FILE = System.getProperty("loa.trace");
+    /** One search in this many is traced. */
+    private static final int TRACE_RATE =
+        Math.max(1, Integer.getInteger("loa.trace.rate", 1));
+    /** Number of events kept by each engine's trace. */
+    private static final int TRACE_EVENTS =
+        Integer.getInteger("loa.trace.events", 1 << 18);
+    /** A fall by more than this in an engine's value of its position from
+     *  one of its moves to the next counts as a blunder, on which its
+     *  trace is dumped. */
+    private static final int BLUNDER_DROP = 300;
 
     /** A new MachinePlayer with no piece or controller (intended to produce
      *  a template). */
@@ -37,8 +104,11 @@ class MachinePlayer extends Player {
         Move choice;
 
         assert side() == getGame().getBoard().turn();
-        int depth;
-        choice = searchForMove();
+        choice = SearchRunner.DEFAULT.search(this, getBoard(),
+                                             defaultLimits(getBoard()));
+        if (choice == null) {
+            return SearchRunner.CANCELLED;
+        }
         getGame().reportMove(choice);
         return choice.toString();
     }
@@ -54,25 +124,188 @@ class MachinePlayer extends Player {
     }
 
     /** Return a move after searching the game tree to DEPTH>0 moves
-     *  from the current position. Assumes the game is not over. */
-    private Move searchForMove() {
-        Board work = new Board(getBoard());
-        int subFactor = work.getmoveLimit() - work.movesMade();
+     *  from POSITION, which is not modified.  Assumes the game is not over
+     *  and that side() is to move in POSITION. */
+    @Override
+    public Move searchForMove(Board position) {
+        return searchForMove(position, defaultLimits(position), null);
+    }
+
+    /** Return the limits used to choose a move in POSITION when no others
+     *  are given. */
+    private SearchLimits defaultLimits(Board position) {
+        int subFactor = position.getmoveLimit() - position.movesMade();
         int depth;
         if (subFactor < 3) {
             depth = subFactor;
         } else {
             depth = chooseDepth();
         }
-        int value;
-        assert side() == work.turn();
-        _foundMove = null;
-        if (side() == WP) {
-            value = findMove(work, depth, true, 1, -INFTY, INFTY);
-        } else {
-            value = findMove(work, depth, true, -1, -INFTY, INFTY);
+        return SearchLimits.depth(depth);
+    }
+
+    /** Return a move for the side to move in POSITION, which is not
+     *  modified, searching by iterative deepening within LIMITS and
+     *  reporting to LISTENER, if it is not null.  The result is the best
+     *  move of the deepest completed iteration.  Assumes the game is not
+     *  over.  If LIMITS asks for several principal variations, each
+     *  iteration finds that many best root moves with exact scores (see
+     *  lines()), reporting each line to LISTENER. */
+    @Override
+    public Move searchForMove(Board position, SearchLimits limits,
+                              SearchListener listener) {
+        Board work = new Board(position);
+        work.setNetwork(_usingNetwork ? NETWORK : null);
+        _cacheUsable = CACHE != null && _caching
+            && (_usingNetwork || NETWORK == null);
+        assert side() == null || side() == work.turn();
+        _startTime = System.currentTimeMillis();
+        long budget = limits.timeBudget(work.turn(), work);
+        _deadline = budget > 0 ? _startTime + budget : Long.MAX_VALUE;
+        _nodeLimit =
+            limits.maxNodes() > 0 ? limits.maxNodes() : Long.MAX_VALUE;
+        _nextProgress = _startTime + PROGRESS_INTERVAL;
+        _listener = listener;
+        _limits = limits;
+        _nodes = 0;
+        _tablebaseProbes = _tablebaseHits = 0;
+        _stopped = limits.cancelled();
+        _rootPly = work.movesMade();
+        _nullMoves = 0;
+        _afterNull = false;
+        _prevPvLength = 0;
+        for (Move[] killers : _killers) {
+            Arrays.fill(killers, null);
+        }
+        _previousTrace = _searchTrace;
+        _searchTrace = null;
+        if (TRACE_FILE != null && _searches++ % TRACE_RATE == 0) {
+            int k = _previousTrace != null
+                && _previousTrace == _traceRings[0] ? 1 : 0;
+            if (_traceRings[k] == null) {
+                _traceRings[k] = new SearchTrace(TRACE_EVENTS);
+            }
+            _searchTrace = _latestTrace = _traceRings[k];
+            _searchTrace.search(Symmetry.key(work), work.movesMade());
+        }
+        _trace = _searchTrace;
+        int maxDepth = limits.maxDepth() > 0
+            ? Math.min(limits.maxDepth(), MAX_DEPTH) : MAX_DEPTH;
+        int sense = work.turn() == WP ? 1 : -1;
+        List<Move> moves = work.legalMoves();
+        Move best = moves.isEmpty() ? null : moves.get(0);
+        int bestValue = 0;
+        int numLines = limits.multiPv();
+        _lines = new ArrayList<>();
+        if (_solving && numLines == 1 && !moves.isEmpty() && !_stopped
+            && connectionThreat(work, work.turn())) {
+            Move win = provenWin(work, sense, listener);
+            if (win != null) {
+                best = win;
+                bestValue = sense * WINNING_VALUE;
+                maxDepth = 0;
+            }
+        }
+        for (int depth = 1; depth <= maxDepth && !_stopped; depth += 1) {
+            FlightEvents.SearchIteration event =
+                new FlightEvents.SearchIteration();
+            event.begin();
+            _foundMove = null;
+            List<Line> lines = null;
+            int value;
+            if (numLines > 1) {
+                lines = searchLines(work, depth, sense, numLines);
+                value = lines.isEmpty() ? 0 : lines.get(0).score();
+            } else {
+                value = findMove(work, depth, true, sense, -INFTY, INFTY);
+            }
+            if (_stopped || _foundMove == null) {
+                break;
+            }
+            if (event.shouldCommit()) {
+                event.depth = depth;
+                event.nodes = _nodes;
+                event.score = value;
+                event.commit();
+            }
+            best = _foundMove;
+            bestValue = value;
+            _prevPvLength = _pvLength[0];
+            System.arraycopy(_pv[0], 0, _prevPv, 0, _prevPvLength);
+            if (lines != null) {
+                _lines = lines;
+                for (int k = 0; listener != null && k < lines.size();
+                     k += 1) {
+                    listener.lineComplete(depth, k + 1, lines.get(k).score(),
+                                          _nodes, elapsed(),
+                                          lines.get(k).pv());
+                }
+            } else if (listener != null) {
+                listener.iterationComplete(depth, value, _nodes,
+                                           elapsed(), principalVariation());
+            }
+            if (Math.abs(value) >= WINNING_VALUE) {
+                break;
+            }
+        }
+        _listener = null;
+        _trace = null;
+        if (TRACE_FILE != null) {
+            checkBlunder(work, sense * bestValue, best);
+        }
+        Metrics.REGISTRY.recordSearch(_nodes, elapsed());
+        Metrics.REGISTRY.recordTablebase(_tablebaseProbes, _tablebaseHits);
+        return best;
+    }
+
+    @Override
+    public void stop() {
+        _stopped = true;
+        _solver.stop();
+    }
+
+    /** Return the principal variations found by the last completed
+     *  iteration of the latest search for several of them, best first
+     *  (empty if the search wanted only one). */
+    List<Line> lines() {
+        return _lines;
+    }
+
+    /** Return the number of positions visited by the latest search. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Turn the search option NAME on iff VALUE.  The options are
+     *  "nullmove" (null-move pruning), "lmr" (late move reductions),
+     *  "futility" (futility pruning), "solver" (proof-number search
+     *  for forced wins), "cache" (use of the analysis cache named by
+     *  loa.cache, if any) and "network" (evaluation by the network named
+     *  by loa.network, if any); all are on initially. */
+    @Override
+    public void setOption(String name, boolean value) {
+        switch (name.toLowerCase()) {
+        case "nullmove":
+            _nullMovePruning = value;
+            break;
+        case "lmr":
+            _lateMoveReductions = value;
+            break;
+        case "futility":
+            _futilityPruning = value;
+            break;
+        case "solver":
+            _solving = value;
+            break;
+        case "cache":
+            _caching = value;
+            break;
+        case "network":
+            _usingNetwork = value;
+            break;
+        default:
+            throw new IllegalArgumentException("unknown option: " + name);
         }
-        return _foundMove;
     }
 
     /** Find a move from position BOARD and return its value, recording
@@ -81,43 +314,523 @@ class MachinePlayer extends Player {
      *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
      *  DEPTH levels.  Searching at level 0 simply returns a static estimate
      *  of the board value and does not set _foundMove. If the game is over
-     *  on BOARD, does not set _foundMove. */
+     *  on BOARD, does not set _foundMove.  If the search is stopped, the
+     *  value returned is meaningless.
+     *
+     *  Below the root, the search is selective: null-move pruning, late
+     *  move reductions and futility pruning may each be enabled by
+     *  setOption. */
     private int findMove(Board board, int depth, boolean saveMove,
                          int sense, int alpha, int beta) {
-        Piece curTurn = board.turn();
-        if (depth == 0) {
-            return heuristic(board);
+        SearchTrace trace = _trace;
+        if (trace == null) {
+            return searchNode(board, depth, saveMove, sense, alpha, beta);
         }
-        int bestScore = 0;
-        List<Move> l = board.legalMoves();
-        for (Move m: l) {
+        int ply = board.movesMade() - _rootPly + _nullMoves;
+        long node = _nodes;
+        trace.enter(node, ply, depth, alpha, beta,
+                    _afterNull ? null : board.lastMove());
+        int value = searchNode(board, depth, saveMove, sense, alpha, beta);
+        trace.exit(node, ply, depth, alpha, beta, value, _exitMove,
+                   _exitReason);
+        return value;
+    }
 
+    /** The body of findMove, with the same parameters and result, which
+     *  also sets _exitReason and _exitMove. */
+    private int searchNode(Board board, int depth, boolean saveMove,
+                           int sense, int alpha, int beta) {
+        int ply = board.movesMade() - _rootPly + _nullMoves;
+        boolean afterNull = _afterNull;
+        _afterNull = false;
+        _pvLength[ply] = ply;
+        countNode();
+        if (board.gameOver()) {
+            return leave(SearchTrace.TERMINAL, null,
+                         terminalValue(board, depth));
+        }
+        if (ply > 0 && TABLEBASE != null) {
+            int entry = TABLEBASE.probe(board);
+            _tablebaseProbes += 1;
+            if (entry != Tablebase.NOT_FOUND) {
+                _tablebaseHits += 1;
+                return leave(SearchTrace.TABLEBASE, null,
+                             tablebaseValue(board, entry));
+            }
+        }
+        if (depth == 0) {
+            return leave(SearchTrace.LEAF, null, heuristic(board));
+        }
+        boolean caching = _cacheUsable;
+        long key = caching ? cacheKey(board) : 0;
+        Move cachedMove = null;
+        if (caching) {
+            long entry = CACHE.probe(key);
+            if (entry != AnalysisCache.NONE) {
+                cachedMove = AnalysisCache.move(entry);
+                int value = fromCache(AnalysisCache.value(entry), depth);
+                int bound = AnalysisCache.bound(entry);
+                if (ply > 0 && AnalysisCache.depth(entry) >= depth
+                    && (bound == AnalysisCache.EXACT
+                        || bound == AnalysisCache.LOWER && value >= beta
+                        || bound == AnalysisCache.UPPER && value <= alpha)) {
+                    return leave(SearchTrace.CACHE, cachedMove, value);
+                }
+            }
+        }
+        int alpha0 = alpha, beta0 = beta;
+        if (ply > 0 && !afterNull && _nullMovePruning
+            && depth >= NULL_MOVE_MIN_DEPTH
+            && nullMoveCutoff(board, depth, sense, alpha, beta)) {
+            return leave(SearchTrace.NULL_MOVE, null,
+                         sense == 1 ? beta : alpha);
+        }
+        boolean futile = ply > 0 && depth == 1 && _futilityPruning
+            && isFutile(board, sense, alpha, beta);
+        int bestScore = sense == 1 ? -INFTY : INFTY;
+        MovePicker picker = orderedMoves(board, ply, cachedMove);
+        Move first = null, bestMove = null;
+        int rank = -1;
+        int reason = futile ? SearchTrace.FUTILE : SearchTrace.ALL_MOVES;
+        for (Move m = picker.next(); m != null; m = picker.next()) {
+            rank += 1;
+            first = first == null ? m : first;
+            boolean capture = picker.isCapture();
+            if (futile) {
+                /* Search the first move, and after it only captures. */
+                picker.skipQuiets();
+            }
+            int reduction = 0;
+            if (ply > 0 && _lateMoveReductions && depth >= LMR_MIN_DEPTH
+                && rank >= LMR_FULL_MOVES && !capture) {
+                reduction = rank >= LMR_DEEP_RANK ? 2 : 1;
+                reduction = Math.min(reduction, depth - 2);
+            }
             board.makeMove(m);
-            int score = findMove(board, depth - 1,
+            int score = findMove(board, depth - 1 - reduction,
                         false, sense * -1, alpha, beta);
-            int oldScore = bestScore;
-            if (sense == -1) {
-                bestScore = INFTY;
-                bestScore = min(bestScore, score);
-                beta = min(score, beta);
-            } else if (sense == 1) {
-                bestScore = -INFTY;
-                bestScore = max(bestScore, score);
-                alpha = max(score, alpha);
+            if (reduction > 0 && !_stopped
+                && (sense == 1 ? score > alpha : score < beta)) {
+                score = findMove(board, depth - 1,
+                                 false, sense * -1, alpha, beta);
             }
-            if (saveMove) {
-                if (curTurn == WP && bestScore >= oldScore) {
-                    _foundMove = m;
-                } else if (curTurn == BP && bestScore <= oldScore) {
+            board.retract();
+            if (_stopped) {
+                return leave(SearchTrace.STOPPED, bestMove, bestScore);
+            }
+            if (sense == 1 ? score > bestScore : score < bestScore) {
+                bestScore = score;
+                bestMove = m;
+                updatePrincipalVariation(ply, m);
+                if (saveMove) {
                     _foundMove = m;
                 }
             }
-            board.retract();
+            if (sense == 1) {
+                alpha = max(score, alpha);
+            } else {
+                beta = min(score, beta);
+            }
             if (beta <= alpha) {
+                if (!capture) {
+                    storeKiller(ply, m);
+                }
+                reason = SearchTrace.CUTOFF;
                 break;
             }
         }
-        return bestScore;
+        if (saveMove && _foundMove == null) {
+            _foundMove = first;
+        }
+        if (caching && Math.abs(bestScore) < INFTY) {
+            int bound = bestScore >= beta0 ? AnalysisCache.LOWER
+                : bestScore <= alpha0 ? AnalysisCache.UPPER
+                : AnalysisCache.EXACT;
+            if (futile && bound == AnalysisCache.EXACT) {
+                /* The skipped quiet moves might have done better. */
+                bound = sense == 1 ? AnalysisCache.LOWER
+                    : AnalysisCache.UPPER;
+            }
+            CACHE.store(key, depth, bound, toCache(bestScore, depth),
+                        bestMove);
+        }
+        return leave(reason, bestMove, bestScore);
+    }
+
+    /** Record REASON and BEST (null if none) as the reason for leaving the
+     *  current node and its best move, and return VALUE. */
+    private int leave(int reason, Move best, int value) {
+        _exitReason = reason;
+        _exitMove = best;
+        return value;
+    }
+
+    /** Note that this engine valued its position on BOARD at VALUE
+     *  (positive if good for it) and chose BEST.  If its previous search,
+     *  from two moves before, was traced, chose the move played there and
+     *  valued its position much higher, dump that search's trace to
+     *  TRACE_FILE. */
+    private void checkBlunder(Board board, int value, Move best) {
+        int movesMade = board.movesMade();
+        long drop = (long) _lastValue - value;
+        Move played = movesMade == _lastMovesMade + 2
+            ? board.move(_lastMovesMade) : null;
+        if (_previousTrace != null && played != null && _lastBest != null
+            && played.getFrom() == _lastBest.getFrom()
+            && played.getTo() == _lastBest.getTo()
+            && drop > BLUNDER_DROP) {
+            dumpTrace(_previousTrace, new File(TRACE_FILE));
+        }
+        _lastValue = value;
+        _lastMovesMade = movesMade;
+        _lastBest = best;
+    }
+
+    /** Write the events of this engine's latest traced search to FILE.
+     *  Returns false if the engine has traced no search or the dump
+     *  fails. */
+    boolean dumpTrace(File file) {
+        return _latestTrace != null && dumpTrace(_latestTrace, file);
+    }
+
+    /** Write the events in TRACE to FILE, returning false if that
+     *  fails. */
+    private boolean dumpTrace(SearchTrace trace, File file) {
+        try {
+            trace.dump(file);
+            return true;
+        } catch (IOException excp) {
+            Utils.error("cannot dump search trace: %s%n", excp.getMessage());
+            return false;
+        }
+    }
+
+    /** Return the best COUNT moves on BOARD (or all, if fewer), each with
+     *  its exact value searched to DEPTH and principal variation, best
+     *  first for the side to move (SENSE as for findMove).  Each root move
+     *  is searched with a window bounded by the value of the COUNT-th best
+     *  move so far, so moves that cannot enter the list fail low cheaply.
+     *  Moves of the previous iteration's lines are searched first.  Sets
+     *  _foundMove and the root principal variation to those of the best
+     *  line.  The result is meaningless if the search is stopped. */
+    private List<Line> searchLines(Board board, int depth, int sense,
+                                   int count) {
+        List<Move> moves = board.legalMoves();
+        for (int k = _lines.size() - 1; k >= 0; k -= 1) {
+            Move previous = _lines.get(k).move();
+            if (moves.remove(previous)) {
+                moves.add(0, previous);
+            }
+        }
+        List<Line> result = new ArrayList<>();
+        for (Move m : moves) {
+            boolean full = result.size() == count;
+            int bound = full ? result.get(count - 1).score()
+                : sense == 1 ? -INFTY : INFTY;
+            board.makeMove(m);
+            int score = sense == 1
+                ? findMove(board, depth - 1, false, -1, bound, INFTY)
+                : findMove(board, depth - 1, false, 1, -INFTY, bound);
+            board.retract();
+            if (_stopped) {
+                return result;
+            }
+            if (full && (sense == 1 ? score <= bound : score >= bound)) {
+                continue;
+            }
+            updatePrincipalVariation(0, m);
+            List<Move> pv = principalVariation();
+            int k = result.size();
+            while (k > 0 && (sense == 1 ? score > result.get(k - 1).score()
+                             : score < result.get(k - 1).score())) {
+                k -= 1;
+            }
+            result.add(k, new Line(score, pv));
+            if (result.size() > count) {
+                result.remove(count);
+            }
+        }
+        if (!result.isEmpty()) {
+            List<Move> pv = result.get(0).pv();
+            _foundMove = pv.get(0);
+            for (int k = 0; k < pv.size(); k += 1) {
+                _pv[0][k] = pv.get(k);
+            }
+            _pvLength[0] = pv.size();
+        }
+        return result;
+    }
+
+    /** Return the first move of a forced win for the side to move on
+     *  BOARD (SENSE as for findMove) within SOLVER_MOVES of its moves, as
+     *  proved by the proof-number solver, or null if none is proved
+     *  within SOLVER_NODES positions.  A proof is reported to LISTENER,
+     *  if not null, as a completed iteration. */
+    private Move provenWin(Board board, int sense, SearchListener listener) {
+        int result = _solver.solve(board, SOLVER_MOVES,
+                                   Math.min(SOLVER_NODES, _nodeLimit));
+        _nodes += _solver.nodes();
+        if (result != ProofSolver.PROVEN || _stopped) {
+            return null;
+        }
+        Move win = _solver.winningMove();
+        if (listener != null) {
+            listener.iterationComplete(2 * _solver.movesToWin() - 1,
+                                       sense * WINNING_VALUE, _nodes,
+                                       elapsed(),
+                                       Collections.singletonList(win));
+        }
+        return win;
+    }
+
+    /** Return true iff passing on BOARD, searched to DEPTH with SENSE,
+     *  ALPHA and BETA as for findMove, still fails high for the side to
+     *  move, so that the node can be cut off.  When the opponent may be
+     *  close to connecting, the cutoff is confirmed by a reduced-depth
+     *  search of this node without null moves. */
+    private boolean nullMoveCutoff(Board board, int depth, int sense,
+                                   int alpha, int beta) {
+        if (sense == 1 ? beta == INFTY : alpha == -INFTY) {
+            return false;
+        }
+        int reduced = Math.max(0, depth - 1 - NULL_MOVE_REDUCTION);
+        board.makeNullMove();
+        _nullMoves += 1;
+        _afterNull = true;
+        int score = sense == 1
+            ? findMove(board, reduced, false, -1, beta - 1, beta)
+            : findMove(board, reduced, false, 1, alpha, alpha + 1);
+        _afterNull = false;
+        _nullMoves -= 1;
+        board.retractNullMove();
+        if (_stopped || (sense == 1 ? score < beta : score > alpha)) {
+            return false;
+        }
+        if (!connectionThreat(board, board.turn().opposite())) {
+            return true;
+        }
+        _afterNull = true;
+        int verified = findMove(board, depth - NULL_MOVE_REDUCTION, false,
+                                sense, alpha, beta);
+        return !_stopped
+            && (sense == 1 ? verified >= beta : verified <= alpha);
+    }
+
+    /** Return true iff, at a frontier node BOARD searched with SENSE,
+     *  ALPHA and BETA as for findMove, the static value is so far outside
+     *  the window that quiet moves cannot bring it back.  Never true when
+     *  the side to move may be close to connecting. */
+    private boolean isFutile(Board board, int sense, int alpha, int beta) {
+        if (connectionThreat(board, board.turn())) {
+            return false;
+        }
+        long value = heuristic(board);
+        return sense == 1 ? value + FUTILITY_MARGIN <= alpha
+            : value - FUTILITY_MARGIN >= beta;
+    }
+
+    /** Return true iff SIDE's pieces on BOARD may be close to connecting:
+     *  at most THREAT_STRAGGLERS of them are outside the largest group.
+     *  The Euler number, a lower bound on the number of groups, rules out
+     *  most positions without computing the groups. */
+    private static boolean connectionThreat(Board board, Piece side) {
+        if (board.eulerNumber(side) > THREAT_STRAGGLERS + 1) {
+            return false;
+        }
+        List<Integer> sizes = board.getRegionSizes(side);
+        return board.pieceCount(side) - Collections.max(sizes)
+            <= THREAT_STRAGGLERS;
+    }
+
+    /** Return a picker for the moves on BOARD at PLY in search order:
+     *  CACHEDMOVE, the best move found for BOARD by an earlier search, or
+     *  else the move at PLY of the previous iteration's principal
+     *  variation, if legal, then captures, then the killer moves of PLY,
+     *  then the remaining moves.  CACHEDMOVE may be null. */
+    private MovePicker orderedMoves(Board board, int ply, Move cachedMove) {
+        Move hashMove = cachedMove != null ? cachedMove
+            : ply < _prevPvLength ? _prevPv[ply] : null;
+        return new MovePicker(board, hashMove, _killers[ply]);
+    }
+
+    /** Record MV, a quiet move, as having caused a cutoff at PLY. */
+    private void storeKiller(int ply, Move mv) {
+        Move[] killers = _killers[ply];
+        if (killers[0] != mv) {
+            System.arraycopy(killers, 0, killers, 1, killers.length - 1);
+            killers[0] = mv;
+        }
+    }
+
+    /** Return the value of BOARD, on which the game is over, with DEPTH
+     *  levels of search remaining.  Quicker wins score higher. */
+    private int terminalValue(Board board, int depth) {
+        Piece winner = board.winner();
+        if (winner == WP) {
+            return WINNING_VALUE + depth;
+        } else if (winner == BP) {
+            return -WINNING_VALUE - depth;
+        } else {
+            return 0;
+        }
+    }
+
+    /** Return the value of BOARD given its tablebase ENTRY.  Decided
+     *  positions score just below the values of wins found by search, less
+     *  their distance to connect; wins that the move limit prevents count
+     *  as draws. */
+    private int tablebaseValue(Board board, int entry) {
+        if (entry == Tablebase.DRAW) {
+            return 0;
+        }
+        int distance = Tablebase.distance(entry);
+        if (distance > board.getmoveLimit() - board.movesMade()) {
+            return 0;
+        }
+        int value = TABLEBASE_WIN - distance;
+        boolean whiteWins = Tablebase.isWin(entry) == (board.turn() == WP);
+        return whiteWins ? value : -value;
+    }
+
+    /** Return the tablebase named by the system property loa.tablebase,
+     *  or null if it is unset or cannot be loaded. */
+    private static Tablebase loadTablebase() {
+        String name = System.getProperty("loa.tablebase");
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Tablebase.load(new File(name));
+        } catch (IOException excp) {
+            Utils.error("cannot load tablebase: %s%n", excp.getMessage());
+            return null;
+        }
+    }
+
+    /** Return the analysis cache named by the system property loa.cache,
+     *  created if new with loa.cache.mb megabytes, or null if it is unset
+     *  or cannot be opened. */
+    private static AnalysisCache loadCache() {
+        String name = System.getProperty("loa.cache");
+        if (name == null) {
+            return null;
+        }
+        try {
+            return AnalysisCache.open(new File(name),
+                                      Integer.getInteger("loa.cache.mb",
+                                          AnalysisCache.DEFAULT_MEGABYTES),
+                                      evaluatorIdentity(NETWORK));
+        } catch (IOException excp) {
+            Utils.error("cannot open analysis cache: %s%n",
+                        excp.getMessage());
+            return null;
+        }
+    }
+
+    /** Return the identity of the values of heuristic when positions are
+     *  evaluated by NETWORK, or by the hand-written terms if it is null.
+     *  A change to the hand-written terms themselves must change
+     *  AnalysisCache.FORMAT. */
+    static long evaluatorIdentity(Network network) {
+        return network != null ? network.identity()
+            : PatternTables.get().identity();
+    }
+
+    /** Return the network named by the system property loa.network, or
+     *  null if it is unset or cannot be loaded. */
+    private static Network loadNetwork() {
+        String name = System.getProperty("loa.network");
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Network.load(new File(name));
+        } catch (IOException excp) {
+            Utils.error("cannot load network: %s%n", excp.getMessage());
+            return null;
+        }
+    }
+
+    /** Return the key of BOARD in the analysis cache, or in any other
+     *  cache of search results.  Positions close enough to the move limit
+     *  for it to affect a search are told apart by the number of moves
+     *  left. */
+    static long cacheKey(Board board) {
+        return cacheKey(board, Symmetry.key(board));
+    }
+
+    /** Return the key of BOARD as for cacheKey(BOARD), made from KEY,
+     *  which is Symmetry.key of BOARD or of an image of it. */
+    static long cacheKey(Board board, long key) {
+        int left = board.getmoveLimit() - board.movesMade();
+        return key + Math.min(left, MAX_DEPTH + 1) * MOVES_LEFT_KEY;
+    }
+
+    /** Return VALUE, found with DEPTH levels of search remaining, as
+     *  stored in the analysis cache.  Wins found by search are stored
+     *  relative to the position rather than to the search horizon. */
+    private static int toCache(int value, int depth) {
+        if (value >= WINNING_VALUE - MAX_DEPTH) {
+            return value - depth;
+        } else if (value <= -WINNING_VALUE + MAX_DEPTH) {
+            return value + depth;
+        }
+        return value;
+    }
+
+    /** Return the value of a position with DEPTH levels of search
+     *  remaining whose value in the analysis cache is VALUE. */
+    private static int fromCache(int value, int depth) {
+        if (value >= WINNING_VALUE - MAX_DEPTH) {
+            return value + depth;
+        } else if (value <= -WINNING_VALUE + MAX_DEPTH) {
+            return value - depth;
+        }
+        return value;
+    }
+
+    /** Count one more node visited, stopping the search if a node or time
+     *  limit has been reached or its limits are cancelled, and reporting
+     *  progress periodically. */
+    private void countNode() {
+        _nodes += 1;
+        if (_nodes >= _nodeLimit) {
+            _stopped = true;
+        }
+        if ((_nodes & CHECK_MASK) == 0) {
+            long now = System.currentTimeMillis();
+            if (now >= _deadline || _limits.cancelled()) {
+                _stopped = true;
+            }
+            if (_listener != null && now >= _nextProgress) {
+                _nextProgress = now + PROGRESS_INTERVAL;
+                _listener.progress(_nodes, now - _startTime);
+            }
+        }
+    }
+
+    /** Make M followed by the principal variation of the next ply the
+     *  principal variation at PLY. */
+    private void updatePrincipalVariation(int ply, Move m) {
+        _pv[ply][ply] = m;
+        for (int k = ply + 1; k < _pvLength[ply + 1]; k += 1) {
+            _pv[ply][k] = _pv[ply + 1][k];
+        }
+        _pvLength[ply] = Math.max(ply + 1, _pvLength[ply + 1]);
+    }
+
+    /** Return the principal variation found by the last iteration. */
+    private List<Move> principalVariation() {
+        List<Move> result = new ArrayList<>();
+        for (int k = 0; k < _pvLength[0]; k += 1) {
+            result.add(_pv[0][k]);
+        }
+        return result;
+    }
+
+    /** Return milliseconds since the start of the current search. */
+    private long elapsed() {
+        return System.currentTimeMillis() - _startTime;
     }
 
     /** Return a search depth for the current position. */
@@ -130,7 +843,7 @@ class MachinePlayer extends Player {
     /** Assigns a heuristic value to the board.
      * @param board is the current board.
      * @return */
-    private int heuristic(Board board) {
+    static int heuristic(Board board) {
         Board curBoard = board;
         Piece curTurn = curBoard.turn();
         if (curBoard.piecesContiguous(curTurn)) {
@@ -146,21 +859,133 @@ class MachinePlayer extends Player {
                 return -INFTY;
             }
         }
-        double[] factor1 = board.avgDistanceToCOM();
+        Network.Accumulator accumulator = board.accumulator();
+        if (accumulator != null) {
+            return accumulator.network().evaluate(accumulator, curTurn);
+        }
         int sizeB = board.getRegionSizes(BP).size();
         int sizeW = board.getRegionSizes(WP).size();
         int maxB = board.getRegionSizes(BP).get(0);
         int maxW = board.getRegionSizes(WP).get(0);
 
-        int heurB = (int) (100 * factor1[0]) - (sizeB * 10) + maxB;
-        int heurW = (int) (100 * factor1[1]) - (sizeW * 10) + maxW;
+        int heurB = -(sizeB * 10) + maxB;
+        int heurW = -(sizeW * 10) + maxW;
+
+        return board.patternScore() + heurW - heurB;
+    }
+
+    /** A principal variation found by a search for several of them. */
+    static final class Line {
 
-        return heurB - heurW;
+        /** A line with value SCORE (positive favours white) and principal
+         *  variation PV. */
+        Line(int score, List<Move> pv) {
+            _score = score;
+            _pv = pv;
+        }
+
+        /** Return my first move. */
+        Move move() {
+            return _pv.get(0);
+        }
+
+        /** Return my value (positive favours white). */
+        int score() {
+            return _score;
+        }
+
+        /** Return my moves. */
+        List<Move> pv() {
+            return _pv;
+        }
+
+        /** Value of the line. */
+        private final int _score;
+        /** Moves of the line. */
+        private final List<Move> _pv;
     }
 
+    /** Principal variations found by the latest multi-PV search. */
+    private List<Line> _lines = new ArrayList<>();
+
     /** Used to convey moves discovered by findMove. */
     private Move _foundMove;
+    /** Reason (a SearchTrace reason) for which searchNode last
+     *  returned. */
+    private int _exitReason;
+    /** Best move found by the node searchNode last left, or null. */
+    private Move _exitMove;
+
+    /** Trace recording the current search, or null. */
+    private SearchTrace _trace;
+    /** The two rings in which this engine traces searches, each made
+     *  when first needed, so that one search's trace survives the next. */
+    private final SearchTrace[] _traceRings = new SearchTrace[2];
+    /** Traces of the latest search and of the one before it, each null if
+     *  that search was not traced. */
+    private SearchTrace _searchTrace, _previousTrace;
+    /** Trace of the latest traced search, or null if none. */
+    private SearchTrace _latestTrace;
+    /** Number of searches started, for sampling traces. */
+    private int _searches;
+    /** This engine's value of its position (positive if good for it) in
+     *  its last search, and the moves made before that position. */
+    private int _lastValue, _lastMovesMade = Integer.MIN_VALUE;
+    /** The move chosen by this engine's last search, or null. */
+    private Move _lastBest;
 
+    /** Triangular table of principal variations: _pv[P][P.._pvLength[P]-1]
+     *  is the best line found from ply P of the current search. */
+    private final Move[][] _pv = new Move[MAX_DEPTH + 2][MAX_DEPTH + 2];
+    /** End of the principal variation at each ply. */
+    private final int[] _pvLength = new int[MAX_DEPTH + 2];
+    /** Killer moves: _killers[P] holds the quiet moves that most recently
+     *  caused cutoffs at ply P of the current search, latest first. */
+    private final Move[][] _killers = new Move[MAX_DEPTH + 2][NUM_KILLERS];
+    /** Principal variation of the last completed iteration, used to order
+     *  moves. */
+    private final Move[] _prevPv = new Move[MAX_DEPTH + 2];
+    /** Length of _prevPv. */
+    private int _prevPvLength;
 
+    /** True iff null-move pruning, late move reductions and futility
+     *  pruning, respectively, are enabled. */
+    private boolean _nullMovePruning = true, _lateMoveReductions = true,
+        _futilityPruning = true;
+    /** True iff positions in which the side to move may be close to
+     *  connecting are first given to the proof-number solver. */
+    private boolean _solving = true;
+    /** True iff the analysis cache, if any, is used. */
+    private boolean _caching = true;
+    /** True iff the network, if any, evaluates positions. */
+    private boolean _usingNetwork = true;
+    /** True iff the current search uses the analysis cache: caching is on,
+     *  and the cache holds values from the evaluator in use. */
+    private boolean _cacheUsable;
+    /** Solver for forced wins. */
+    private final ProofSolver _solver = new ProofSolver(SOLVER_TABLE_BITS);
+    /** Number of null moves on the current search path. */
+    private int _nullMoves;
+    /** True when the next node searched is reached by a null move (or is a
+     *  verification search), so that it must not try a null move. */
+    private boolean _afterNull;
 
+    /** Number of moves made on the search board at its root. */
+    private int _rootPly;
+    /** Nodes visited by the current search. */
+    private long _nodes;
+    /** Tablebase probes by the current search, and those that found the
+     *  position. */
+    private long _tablebaseProbes, _tablebaseHits;
+    /** Limits of the current search. */
+    private SearchLimits _limits;
+    /** Node limit of the current search. */
+    private long _nodeLimit;
+    /** Start time and deadline of the current search, and the time of its
+     *  next progress report (ms). */
+    private long _startTime, _deadline, _nextProgress;
+    /** Recipient of progress reports for the current search, or null. */
+    private SearchListener _listener;
+    /** True when the current search must stop. */
+    private volatile boolean _stopped;
 }
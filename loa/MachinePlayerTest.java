@@ -0,0 +1,132 @@
+package loa;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+
+/** Tests of MachinePlayer.
+ *  @author Shivang Singh
+ */
+public class MachinePlayerTest {
+
+    /** The selective search options. */
+    private static final String[] SELECTIVE = {
+        "nullmove", "lmr", "futility"
+    };
+
+    /** Return a player with the proof-number solver and the selective
+     *  search options off, except for those named in ON. */
+    private static MachinePlayer player(String... on) {
+        MachinePlayer player = new MachinePlayer();
+        player.setOption("solver", false);
+        for (String option : SELECTIVE) {
+            player.setOption(option, Arrays.asList(on).contains(option));
+        }
+        return player;
+    }
+
+    /** Test that each selective search option, on its own, still finds a
+     *  win in one move. */
+    @Test
+    public void testSelectiveWinInOne() {
+        Piece[][] contents = new Piece[8][8];
+        for (Piece[] row : contents) {
+            Arrays.fill(row, EMP);
+        }
+        contents[0][0] = contents[0][1] = contents[1][3] = WP;
+        contents[7][0] = contents[7][2] = contents[5][4] = BP;
+        contents[4][7] = BP;
+        for (String option : SELECTIVE) {
+            Board b = new Board(contents, WP);
+            Move move = player(option).searchForMove(
+                b, SearchLimits.depth(4), null);
+            b.makeMove(move);
+            assertEquals(option + " wins", WP, b.winner());
+        }
+    }
+
+    /** Test that with the selective search options off, a search finds
+     *  the minimax value and a move that achieves it. */
+    @Test
+    public void testPlainSearch() {
+        int[] score = new int[1];
+        SearchListener listener =
+            (depth, value, nodes, millis, pv) -> score[0] = value;
+        for (int k : new int[] { 0, 3, 4, 5 }) {
+            Board b = Bench.position(k);
+            Move move = player().searchForMove(b, SearchLimits.depth(3),
+                                               listener);
+            assertEquals("value of position " + k, minimax(b, 3), score[0]);
+            b.makeMove(move);
+            assertEquals("move in position " + k, score[0], minimax(b, 2));
+        }
+    }
+
+    /** Test that with pruning off, the best of several principal
+     *  variations is the one a single-variation search finds, and that
+     *  they come best first. */
+    @Test(timeout = 120000)
+    public void testSearchLines() {
+        int[] score = new int[1];
+        SearchListener listener =
+            (depth, value, nodes, millis, pv) -> score[0] = value;
+        for (int k : new int[] { 0, 3, 4, 5 }) {
+            for (int depth = 3; depth <= 5; depth += 1) {
+                Board b = Bench.position(k);
+                String where = "position " + k + " depth " + depth;
+                Move single = player().searchForMove(
+                    b, SearchLimits.depth(depth), listener);
+                MachinePlayer multi = player();
+                Move best = multi.searchForMove(
+                    b, SearchLimits.parse(new String[] {
+                        "go", "depth", Integer.toString(depth),
+                        "multipv", "4"
+                    }), null);
+                List<MachinePlayer.Line> lines = multi.lines();
+                assertEquals("lines at " + where, 4, lines.size());
+                assertEquals("best score at " + where, score[0],
+                             lines.get(0).score());
+                assertEquals("best move at " + where, single, best);
+                assertEquals("first line at " + where, best,
+                             lines.get(0).move());
+                int sense = b.turn() == WP ? 1 : -1;
+                Set<Move> moves = new HashSet<>();
+                for (int i = 0; i < lines.size(); i += 1) {
+                    assertTrue("distinct at " + where,
+                               moves.add(lines.get(i).move()));
+                    assertTrue("order at " + where, i == 0
+                               || sense * lines.get(i - 1).score()
+                               >= sense * lines.get(i).score());
+                }
+            }
+        }
+    }
+
+    /** Return the value of BOARD, positive for white, found by searching
+     *  DEPTH moves ahead without pruning. */
+    private static int minimax(Board board, int depth) {
+        if (board.gameOver()) {
+            Piece winner = board.winner();
+            int win = MachinePlayer.WINNING_VALUE + depth;
+            return winner == WP ? win : winner == BP ? -win : 0;
+        }
+        if (depth == 0) {
+            return MachinePlayer.heuristic(board);
+        }
+        boolean white = board.turn() == WP;
+        int best = white ? -Integer.MAX_VALUE : Integer.MAX_VALUE;
+        for (Move move : board.legalMoves()) {
+            board.makeMove(move);
+            int value = minimax(board, depth - 1);
+            board.retract();
+            best = white ? Math.max(best, value) : Math.min(best, value);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,451 @@
+package loa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static loa.Piece.*;
+
+/** An automated Player that chooses moves by Monte Carlo Tree Search with
+ *  UCT selection.  Playouts make random moves on a per-thread copy of the
+ *  Board and are cut off after PLAYOUT_LIMIT plies.  Each selected leaf
+ *  gets PLAYOUT_BATCH playouts, and the positions at which they were cut
+ *  off are scored together by a BatchEvaluator to decide their results.
+ *  Several threads (the searching thread and helpers from a pool such as
+ *  SearchRunner.HELPERS) may share one tree; virtual losses steer them to
+ *  different lines.  The tree is an arena of parallel primitive arrays
+ *  rather than node objects.
+ *  @author Shivang Singh
+ */
+class MctsPlayer extends Player implements SearchEngine {
+
+    /** Default time per move (ms) when no other limit is given. */
+    static final long DEFAULT_MOVE_TIME = 1000;
+    /** Default number of nodes in the tree arena. */
+    static final int DEFAULT_CAPACITY = 1 << 20;
+    /** Exploration constant of the UCT formula. */
+    static final double EXPLORATION = 1.4;
+    /** Number of lost visits added to each node on a path being explored,
+     *  and removed when the playout's result is recorded. */
+    static final int VIRTUAL_LOSS = 3;
+    /** Maximum length of a playout before it is scored statically. */
+    static final int PLAYOUT_LIMIT = 40;
+    /** Number of playouts from each selected leaf. */
+    static final int PLAYOUT_BATCH = 8;
+    /** Scale of the scores reported to a SearchListener, corresponding
+     *  to a certain win. */
+    static final int SCORE_SCALE = 1000;
+    /** Time (ms) between progress reports to a SearchListener. */
+    private static final long PROGRESS_INTERVAL = 1000;
+    /** Marks a node whose children have not been generated. */
+    private static final int UNEXPANDED = -1;
+
+    /** A new MctsPlayer with no piece or controller (intended to produce
+     *  a template), searching with one thread. */
+    MctsPlayer() {
+        this(null, null, 1, 0);
+    }
+
+    /** A MctsPlayer that plays the SIDE pieces in GAME, using THREADS
+     *  search threads whose random playouts are seeded from SEED.  Its
+     *  helper threads come from SearchRunner.HELPERS. */
+    MctsPlayer(Piece side, Game game, int threads, long seed) {
+        this(side, game, threads, seed, SearchRunner.HELPERS);
+    }
+
+    /** A MctsPlayer as for MctsPlayer(SIDE, GAME, THREADS, SEED), whose
+     *  THREADS - 1 helper threads run on HELPERS. */
+    MctsPlayer(Piece side, Game game, int threads, long seed,
+               ExecutorService helpers) {
+        super(side, game);
+        _threads = threads;
+        _seed = seed;
+        _helpers = helpers;
+    }
+
+    @Override
+    String getMove() {
+        assert side() == getGame().getBoard().turn();
+        Move choice = SearchRunner.DEFAULT.search(
+            this, getBoard(), SearchLimits.moveTime(DEFAULT_MOVE_TIME));
+        if (choice == null) {
+            return SearchRunner.CANCELLED;
+        }
+        getGame().reportMove(choice);
+        return choice.toString();
+    }
+
+    @Override
+    Player create(Piece piece, Game game) {
+        return new MctsPlayer(piece, game, _threads, _seed, _helpers);
+    }
+
+    @Override
+    boolean isManual() {
+        return false;
+    }
+
+    @Override
+    public Move searchForMove(Board position) {
+        return searchForMove(position,
+                             SearchLimits.moveTime(DEFAULT_MOVE_TIME), null);
+    }
+
+    /** Return a move for the side to move in POSITION.  The nodes limit of
+     *  LIMITS bounds the number of playouts. */
+    @Override
+    public Move searchForMove(Board position, SearchLimits limits,
+                              SearchListener listener) {
+        _startTime = System.currentTimeMillis();
+        long budget = limits.timeBudget(position.turn(), position);
+        if (budget == 0 && limits.maxNodes() == 0) {
+            budget = DEFAULT_MOVE_TIME;
+        }
+        _deadline = budget > 0 ? _startTime + budget : Long.MAX_VALUE;
+        _playoutLimit =
+            limits.maxNodes() > 0 ? limits.maxNodes() : Long.MAX_VALUE;
+        _nextProgress = _startTime + PROGRESS_INTERVAL;
+        _listener = listener;
+        _limits = limits;
+        _playouts = 0;
+        _maxDepth = 0;
+        _stopped = limits.cancelled();
+        clearTree(position.turn());
+
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int k = 1; k < _threads; k += 1) {
+            Random random = new Random(_seed + k);
+            helpers.add(_helpers.submit(
+                () -> work(position, random, false)));
+        }
+        work(position, new Random(_seed), true);
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException excp) {
+                _stopped = true;
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
+        }
+
+        int best = mostVisitedChild(0);
+        if (listener != null) {
+            listener.iterationComplete(_maxDepth, score(best), _playouts,
+                                       System.currentTimeMillis() - _startTime,
+                                       principalVariation());
+        }
+        _listener = null;
+        if (best == UNEXPANDED) {
+            List<Move> moves = position.legalMoves();
+            return moves.isEmpty() ? null : moves.get(0);
+        }
+        return moveOf(best);
+    }
+
+    @Override
+    public void stop() {
+        _stopped = true;
+    }
+
+    /** Return the number of playouts performed by the latest search. */
+    long playouts() {
+        return _playouts;
+    }
+
+    /** Perform playouts from POSITION on a private copy of it, choosing
+     *  random moves with RANDOM, until the search stops.  The REPORTER
+     *  thread also sends progress reports. */
+    private void work(Board position, Random random, boolean reporter) {
+        Board board = new Board(position);
+        int rootPly = board.movesMade();
+        long[] black = new long[PLAYOUT_BATCH],
+            white = new long[PLAYOUT_BATCH];
+        int[] scores = new int[PLAYOUT_BATCH];
+        int[] results = new int[Piece.values().length];
+        List<Move> moves = new ArrayList<>();
+        while (!_stopped) {
+            int leaf = select(board);
+            int leafPly = board.movesMade();
+            int unfinished = 0;
+            Arrays.fill(results, 0);
+            for (int k = 0; k < PLAYOUT_BATCH; k += 1) {
+                Piece result = playout(board, random, moves);
+                if (result != null) {
+                    results[result.ordinal()] += 1;
+                } else {
+                    black[unfinished] = board.pieceBits(BP);
+                    white[unfinished] = board.pieceBits(WP);
+                    unfinished += 1;
+                }
+                while (board.movesMade() > leafPly) {
+                    board.retract();
+                }
+            }
+            _evaluator.evaluate(black, white, unfinished, scores);
+            for (int k = 0; k < unfinished; k += 1) {
+                Piece result =
+                    scores[k] > 0 ? WP : scores[k] < 0 ? BP : EMP;
+                results[result.ordinal()] += 1;
+            }
+            while (board.movesMade() > rootPly) {
+                board.retract();
+            }
+            backpropagate(leaf, leafPly - rootPly, results);
+            if (reporter) {
+                checkTime();
+            }
+        }
+    }
+
+    /** Descend from the root to a leaf by UCT, making the moves on BOARD
+     *  and adding a virtual loss to each node passed.  Expands the leaf if
+     *  it has been visited before and the arena has room.  Returns the
+     *  leaf. */
+    synchronized int select(Board board) {
+        int node = 0;
+        _visits[node] += VIRTUAL_LOSS;
+        while (!board.gameOver()) {
+            if (_firstChild[node] == UNEXPANDED) {
+                if (_visits[node] <= VIRTUAL_LOSS || !expand(node, board)) {
+                    break;
+                }
+            }
+            if (_numChildren[node] == 0) {
+                break;
+            }
+            node = bestChild(node);
+            _visits[node] += VIRTUAL_LOSS;
+            board.makeMove(moveOf(node));
+        }
+        return node;
+    }
+
+    /** Add the legal moves on BOARD as the children of NODE.  Return false
+     *  if the arena has no room for them. */
+    private boolean expand(int node, Board board) {
+        List<Move> moves = board.legalMoves();
+        if (_size + moves.size() > _capacity) {
+            return false;
+        }
+        int first = _size;
+        for (Move mv : moves) {
+            int child = _size;
+            _size += 1;
+            _parent[child] = node;
+            _firstChild[child] = UNEXPANDED;
+            _numChildren[child] = 0;
+            _move[child] = (short) encode(mv);
+            _visits[child] = 0;
+            _points[child] = 0;
+        }
+        _numChildren[node] = moves.size();
+        _firstChild[node] = first;
+        return true;
+    }
+
+    /** Return the child of NODE with the greatest UCT value.  Unvisited
+     *  children come first. */
+    private int bestChild(int node) {
+        int first = _firstChild[node], end = first + _numChildren[node];
+        double logParent = Math.log(Math.max(1, _visits[node]));
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < end; child += 1) {
+            int n = _visits[child];
+            if (n == 0) {
+                return child;
+            }
+            double value = _points[child] / (2.0 * n)
+                + EXPLORATION * Math.sqrt(logParent / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /** Play random moves on BOARD until the game ends or PLAYOUT_LIMIT
+     *  moves have been made, and return the winner (EMP for a tie), or
+     *  null if the game is unfinished.  MOVES is a buffer for generating
+     *  moves, whose contents are discarded. */
+    private Piece playout(Board board, Random random, List<Move> moves) {
+        for (int k = 0; k < PLAYOUT_LIMIT; k += 1) {
+            Piece winner = board.winner();
+            if (winner != null) {
+                return winner;
+            }
+            moves.clear();
+            board.addMoves(moves, Board.CAPTURES | Board.QUIET_MOVES);
+            if (moves.isEmpty()) {
+                return null;
+            }
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return board.winner();
+    }
+
+    /** Record the playouts through LEAF, which is DEPTH moves below the
+     *  root, removing the virtual losses of its path.  RESULTS[P] is the
+     *  number of playouts with result P (by ordinal).  Each node is
+     *  credited from the point of view of the side that moved into it. */
+    synchronized void backpropagate(int leaf, int depth, int[] results) {
+        int count = 0;
+        for (int n : results) {
+            count += n;
+        }
+        _playouts += count;
+        _maxDepth = Math.max(_maxDepth, depth);
+        if (_playouts >= _playoutLimit) {
+            _stopped = true;
+        }
+        for (int node = leaf; node != UNEXPANDED; node = _parent[node]) {
+            _visits[node] += count - VIRTUAL_LOSS;
+            Piece mover = depth % 2 == 1 ? _rootSide : _rootSide.opposite();
+            _points[node] +=
+                2 * results[mover.ordinal()] + results[EMP.ordinal()];
+            depth -= 1;
+        }
+    }
+
+    /** Stop the search if its time is up or its limits are cancelled, and
+     *  report progress if due. */
+    private void checkTime() {
+        long now = System.currentTimeMillis();
+        if (now >= _deadline || _limits.cancelled()) {
+            _stopped = true;
+        }
+        if (_listener != null && now >= _nextProgress) {
+            _nextProgress = now + PROGRESS_INTERVAL;
+            _listener.progress(_playouts, now - _startTime);
+        }
+    }
+
+    /** Reset the arena to a single unexpanded root, at which SIDE is to
+     *  move. */
+    void clearTree(Piece side) {
+        _rootSide = side;
+        if (_parent == null) {
+            _capacity = DEFAULT_CAPACITY;
+            _parent = new int[_capacity];
+            _firstChild = new int[_capacity];
+            _numChildren = new int[_capacity];
+            _move = new short[_capacity];
+            _visits = new int[_capacity];
+            _points = new int[_capacity];
+        }
+        _size = 1;
+        _parent[0] = UNEXPANDED;
+        _firstChild[0] = UNEXPANDED;
+        _numChildren[0] = 0;
+        _visits[0] = 0;
+        _points[0] = 0;
+    }
+
+    /** Return the number of playouts through NODE, plus any virtual
+     *  losses. */
+    int visits(int node) {
+        return _visits[node];
+    }
+
+    /** Return twice the number of playouts through NODE won by the side
+     *  that moved into it, counting ties as half. */
+    int points(int node) {
+        return _points[node];
+    }
+
+    /** Return the most visited child of NODE, or UNEXPANDED if it has
+     *  none. */
+    private int mostVisitedChild(int node) {
+        int best = UNEXPANDED;
+        int first = _firstChild[node];
+        for (int child = first; child >= 0
+                 && child < first + _numChildren[node]; child += 1) {
+            if (best == UNEXPANDED || _visits[child] > _visits[best]) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /** Return the reported score of NODE, a child of the root: its win
+     *  rate for the side that moved into it, scaled to +-SCORE_SCALE and
+     *  signed so that positive values favour white. */
+    private int score(int node) {
+        if (node == UNEXPANDED || _visits[node] == 0) {
+            return 0;
+        }
+        double rate = _points[node] / (2.0 * _visits[node]);
+        int value = (int) Math.round((2 * rate - 1) * SCORE_SCALE);
+        return _rootSide == WP ? value : -value;
+    }
+
+    /** Return the line of most visited children from the root. */
+    private List<Move> principalVariation() {
+        List<Move> result = new ArrayList<>();
+        for (int node = mostVisitedChild(0); node != UNEXPANDED
+                 && _visits[node] > 0; node = mostVisitedChild(node)) {
+            result.add(moveOf(node));
+            if (_firstChild[node] == UNEXPANDED) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Return the move leading to NODE. */
+    private Move moveOf(int node) {
+        int code = _move[node];
+        return Move.mv(Square.ALL_SQUARES[code / Square.NUM_SQUARES],
+                       Square.ALL_SQUARES[code % Square.NUM_SQUARES]);
+    }
+
+    /** Return the arena encoding of MV. */
+    private static int encode(Move mv) {
+        return mv.getFrom().index() * Square.NUM_SQUARES
+            + mv.getTo().index();
+    }
+
+    /** Number of search threads. */
+    private final int _threads;
+    /** Runs the helper threads. */
+    private final ExecutorService _helpers;
+    /** Scores the positions at which playouts are cut off. */
+    private final BatchEvaluator _evaluator = BatchEvaluator.get();
+    /** Seed for the playouts' random number generators. */
+    private final long _seed;
+
+    /** The tree arena.  Node 0 is the root.  For node N, _parent[N] is its
+     *  parent, its children are _firstChild[N] to
+     *  _firstChild[N] + _numChildren[N] - 1, _move[N] encodes the move
+     *  leading to it, _visits[N] counts its playouts (plus any virtual
+     *  losses), and _points[N] is twice the number of playouts won by the
+     *  side that moved into N, counting ties as half. */
+    private int[] _parent, _firstChild, _numChildren, _visits, _points;
+    /** Move encodings of the arena's nodes (see encode). */
+    private short[] _move;
+    /** Number of nodes in use and available in the arena. */
+    private int _size, _capacity;
+
+    /** Side to move at the root of the current search. */
+    private Piece _rootSide;
+    /** Playouts completed by the current search, and its limit. */
+    private long _playouts, _playoutLimit;
+    /** Greatest depth of a selected leaf in the current search. */
+    private int _maxDepth;
+    /** Start time and deadline of the current search, and the time of its
+     *  next progress report (ms). */
+    private long _startTime, _deadline, _nextProgress;
+    /** Recipient of progress reports for the current search, or null. */
+    private SearchListener _listener;
+    /** Limits of the current search. */
+    private SearchLimits _limits;
+    /** True when the current search must stop. */
+    private volatile boolean _stopped;
+}
@@ -0,0 +1,99 @@
+package loa;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+
+/** Tests of MctsPlayer.
+ *  @author Shivang Singh
+ */
+public class MctsPlayerTest {
+
+    /** Return playout results with BLACK, WHITE and TIES playouts won by
+     *  black, won by white and tied. */
+    private static int[] results(int black, int white, int ties) {
+        int[] results = new int[Piece.values().length];
+        results[BP.ordinal()] = black;
+        results[WP.ordinal()] = white;
+        results[EMP.ordinal()] = ties;
+        return results;
+    }
+
+    /** Test that playout results are credited along the selected path
+     *  from the point of view of the side moving into each node, and that
+     *  virtual losses are removed. */
+    @Test
+    public void testBackpropagate() {
+        MctsPlayer player = new MctsPlayer();
+        Board board = new Board();
+        player.clearTree(BP);
+        assertEquals("unvisited root", 0, player.select(board));
+        assertEquals("virtual loss", MctsPlayer.VIRTUAL_LOSS,
+                     player.visits(0));
+        player.backpropagate(0, 0, results(3, 1, 2));
+        assertEquals("root visits", 6, player.visits(0));
+        assertEquals("root points", 2 * 1 + 2, player.points(0));
+        int leaf = player.select(board);
+        assertEquals("expanded root", 1, leaf);
+        assertEquals("move made", 1, board.movesMade());
+        player.backpropagate(leaf, 1, results(3, 1, 2));
+        assertEquals("leaf visits", 6, player.visits(leaf));
+        assertEquals("leaf points", 2 * 3 + 2, player.points(leaf));
+        assertEquals("root visits after leaf", 12, player.visits(0));
+        assertEquals("root points after leaf", 8, player.points(0));
+    }
+
+    /** Test that UCT selection tries each child once, then prefers the
+     *  child with the best results, and explores children with few visits
+     *  once another has many. */
+    @Test
+    public void testSelect() {
+        MctsPlayer player = new MctsPlayer();
+        Board board = new Board();
+        int children = board.legalMoves().size();
+        player.clearTree(BP);
+        player.select(board);
+        player.backpropagate(0, 0, results(0, 0, 1));
+        for (int k = 1; k <= children; k += 1) {
+            int leaf = player.select(board);
+            board.retract();
+            assertEquals("unvisited child first", k, leaf);
+            player.backpropagate(leaf, 1,
+                                 k == 1 ? results(1, 0, 0)
+                                 : results(0, 1, 0));
+        }
+        Move first = board.legalMoves().get(0);
+        int leaf = player.select(board);
+        int depth = board.movesMade();
+        assertEquals("best child", first, board.move(0));
+        while (board.movesMade() > 0) {
+            board.retract();
+        }
+        player.backpropagate(leaf, depth, results(0, 0, 1000));
+        player.select(board);
+        assertNotEquals("less visited child", first, board.move(0));
+    }
+
+    /** Test that a search with several threads runs its helpers on the
+     *  pool it was given. */
+    @Test(timeout = 20000)
+    public void testHelpers() {
+        ThreadPoolExecutor pool =
+            (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+        try {
+            MctsPlayer player = new MctsPlayer(null, null, 4, 0, pool);
+            Board board = new Board();
+            Move move = player.searchForMove(
+                board, SearchLimits.moveTime(200), null);
+            assertTrue("legal move", board.isLegal(move));
+            assertEquals("helpers run", 3, pool.getTaskCount());
+            assertEquals("bounded", 2, pool.getLargestPoolSize());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package loa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static loa.Piece.*;
+
+/** Counters and histograms describing the engine's work over the life of
+ *  the process: move latencies, nodes searched and the rate of search,
+ *  tablebase hits, and games played.  Updates are lock-free, so any
+ *  thread may record into REGISTRY at any time.
+ *
+ *  The metrics are exported in the Prometheus text format, to the file
+ *  named by the system property loa.metrics.file (rewritten every
+ *  EXPORT_INTERVAL ms), and over HTTP on localhost:PORT for PORT given
+ *  by loa.metrics.port, once startExport is called.  The exporting
+ *  threads are daemons, so they do not keep the program running.
+ *  @author Shivang Singh
+ */
+class Metrics {
+
+    /** The metrics of this process. */
+    static final Metrics REGISTRY = new Metrics();
+
+    /** Time (ms) between rewrites of the metrics file. */
+    static final long EXPORT_INTERVAL = 10000;
+
+    /** Quantiles reported for move latencies. */
+    static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    /** A histogram of non-negative values, with four buckets per power of
+     *  two, so quantiles are accurate to within 25%. */
+    static final class Histogram {
+
+        /** Record VALUE. */
+        void record(long value) {
+            _counts.incrementAndGet(bucket(Math.max(0, value)));
+            _count.increment();
+            _sum.add(value);
+        }
+
+        /** Return the number of values recorded. */
+        long count() {
+            return _count.sum();
+        }
+
+        /** Return the sum of the values recorded. */
+        long sum() {
+            return _sum.sum();
+        }
+
+        /** Return an upper bound of the Q-quantile of the values recorded
+         *  (0 if there are none). */
+        long quantile(double q) {
+            long total = 0;
+            for (int i = 0; i < NUM_BUCKETS; i += 1) {
+                total += _counts.get(i);
+            }
+            long rank = (long) Math.ceil(q * total), seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i += 1) {
+                seen += _counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        /** Return the bucket holding VALUE >= 0. */
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int mantissa = (int) (value >>> (exp - 2)) & (SUB_BUCKETS - 1);
+            return SUB_BUCKETS * (exp - 1) + mantissa;
+        }
+
+        /** Return the greatest value in BUCKET. */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exp = bucket / SUB_BUCKETS + 1,
+                mantissa = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + mantissa + 1L) << (exp - 2)) - 1;
+        }
+
+        /** Number of buckets per power of two. */
+        private static final int SUB_BUCKETS = 4;
+        /** Number of buckets. */
+        static final int NUM_BUCKETS = SUB_BUCKETS * 62;
+
+        /** Number of values recorded in each bucket. */
+        private final AtomicLongArray _counts =
+            new AtomicLongArray(NUM_BUCKETS);
+        /** Number and sum of values recorded. */
+        private final LongAdder _count = new LongAdder(),
+            _sum = new LongAdder();
+    }
+
+    /** Record that a move was chosen in MILLIS ms. */
+    void recordMove(long millis) {
+        _moveLatency.record(millis);
+    }
+
+    /** Record a search that visited NODES positions in MILLIS ms. */
+    void recordSearch(long nodes, long millis) {
+        _nodes.add(nodes);
+        _searchMillis.add(millis);
+    }
+
+    /** Record PROBES tablebase probes, of which HITS found the
+     *  position. */
+    void recordTablebase(long probes, long hits) {
+        _tablebaseProbes.add(probes);
+        _tablebaseHits.add(hits);
+    }
+
+    /** Record the end of a game won by WINNER (EMP for a tie). */
+    void recordGame(Piece winner) {
+        _games[winner.ordinal()].increment();
+    }
+
+    /** Return the move latency histogram (ms). */
+    Histogram moveLatency() {
+        return _moveLatency;
+    }
+
+    /** Return the total nodes searched. */
+    long nodes() {
+        return _nodes.sum();
+    }
+
+    /** Return the mean nodes per second of all searches. */
+    long nodesPerSecond() {
+        return _nodes.sum() * 1000 / Math.max(1, _searchMillis.sum());
+    }
+
+    /** Return the fraction of tablebase probes that found the position. */
+    double tablebaseHitRate() {
+        long probes = _tablebaseProbes.sum();
+        return probes == 0 ? 0.0 : (double) _tablebaseHits.sum() / probes;
+    }
+
+    /** Return the number of games that ended with result WINNER. */
+    long games(Piece winner) {
+        return _games[winner.ordinal()].sum();
+    }
+
+    /** Return the fraction of the JVM's uptime spent in garbage
+     *  collection. */
+    static double gcShare() {
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc
+                 : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        return (double) gcMillis / Math.max(1, uptime);
+    }
+
+    /** Return a one-line summary of my metrics. */
+    String summary() {
+        return String.format("moves %d, latency p50 %d p90 %d p99 %d ms, "
+                             + "nodes %d, nps %d, tablebase hits %.1f%%, "
+                             + "games %d (black %d, white %d, tied %d), "
+                             + "gc %.1f%%",
+                             _moveLatency.count(),
+                             _moveLatency.quantile(QUANTILES[0]),
+                             _moveLatency.quantile(QUANTILES[1]),
+                             _moveLatency.quantile(QUANTILES[2]),
+                             nodes(), nodesPerSecond(),
+                             100 * tablebaseHitRate(),
+                             games(BP) + games(WP) + games(EMP),
+                             games(BP), games(WP), games(EMP),
+                             100 * gcShare());
+    }
+
+    /** Return my metrics in the Prometheus text exposition format. */
+    String toText() {
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.println("# HELP loa_move_latency_ms Time to choose a move.");
+        out.println("# TYPE loa_move_latency_ms summary");
+        for (double q : QUANTILES) {
+            out.printf(Locale.ROOT,
+                       "loa_move_latency_ms{quantile=\"%s\"} %d%n",
+                       q, _moveLatency.quantile(q));
+        }
+        out.printf(Locale.ROOT, "loa_move_latency_ms_sum %d%n",
+                   _moveLatency.sum());
+        out.printf(Locale.ROOT, "loa_move_latency_ms_count %d%n",
+                   _moveLatency.count());
+        counter(out, "loa_nodes_total", "Positions searched.", nodes());
+        counter(out, "loa_search_ms_total", "Time spent searching.",
+                _searchMillis.sum());
+        gauge(out, "loa_nodes_per_second", "Mean rate of search.",
+              nodesPerSecond());
+        counter(out, "loa_tablebase_probes_total", "Tablebase probes.",
+                _tablebaseProbes.sum());
+        counter(out, "loa_tablebase_hits_total",
+                "Tablebase probes that found the position.",
+                _tablebaseHits.sum());
+        out.println("# HELP loa_games_total Games finished, by winner.");
+        out.println("# TYPE loa_games_total counter");
+        for (Piece winner : Piece.values()) {
+            out.printf(Locale.ROOT, "loa_games_total{winner=\"%s\"} %d%n",
+                       winner == EMP ? "none" : winner.fullName(),
+                       games(winner));
+        }
+        out.println("# HELP loa_gc_share Fraction of uptime spent in GC.");
+        out.println("# TYPE loa_gc_share gauge");
+        out.printf(Locale.ROOT, "loa_gc_share %.6f%n", gcShare());
+        out.flush();
+        return text.toString();
+    }
+
+    /** Start exporting REGISTRY as requested by the system properties
+     *  loa.metrics.file and loa.metrics.port, if set. */
+    static void startExport() throws IOException {
+        String file = System.getProperty("loa.metrics.file");
+        if (file != null) {
+            Path path = Paths.get(file);
+            ScheduledExecutorService writer =
+                Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "loa-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            writer.scheduleAtFixedRate(() -> writeFile(path), 0,
+                                       EXPORT_INTERVAL,
+                                       TimeUnit.MILLISECONDS);
+        }
+        Integer port = Integer.getInteger("loa.metrics.port");
+        if (port != null) {
+            ServerSocket listener =
+                new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+            Thread server = new Thread(() -> serve(listener), "loa-metrics");
+            server.setDaemon(true);
+            server.start();
+        }
+    }
+
+    /** Answer each HTTP request on LISTENER with the exported metrics,
+     *  until LISTENER fails. */
+    private static void serve(ServerSocket listener) {
+        while (true) {
+            try (Socket client = listener.accept()) {
+                client.setSoTimeout(REQUEST_TIMEOUT);
+                BufferedReader request = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(),
+                                          StandardCharsets.US_ASCII));
+                String line;
+                do {
+                    line = request.readLine();
+                } while (line != null && !line.isEmpty());
+                byte[] body =
+                    REGISTRY.toText().getBytes(StandardCharsets.UTF_8);
+                OutputStream out = client.getOutputStream();
+                out.write(String.format(Locale.ROOT,
+                                        "HTTP/1.0 200 OK\r\n"
+                                        + "Content-Type: %s\r\n"
+                                        + "Content-Length: %d\r\n\r\n",
+                                        CONTENT_TYPE, body.length)
+                          .getBytes(StandardCharsets.US_ASCII));
+                out.write(body);
+                out.flush();
+            } catch (IOException excp) {
+                if (listener.isClosed()) {
+                    return;
+                }
+                Utils.debug(1, "metrics request failed: %s",
+                            excp.getMessage());
+            }
+        }
+    }
+
+    /** Replace the contents of PATH with the exported metrics. */
+    private static void writeFile(Path path) {
+        try {
+            Path temp = Paths.get(path + ".tmp");
+            Files.write(temp,
+                        REGISTRY.toText().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            Utils.debug(1, "cannot write metrics: %s", excp.getMessage());
+        }
+    }
+
+    /** Write the counter NAME, described by HELP, with VALUE to OUT. */
+    private static void counter(PrintWriter out, String name, String help,
+                                long value) {
+        out.printf(Locale.ROOT, "# HELP %s %s%n# TYPE %s counter%n%s %d%n",
+                   name, help, name, name, value);
+    }
+
+    /** Write the gauge NAME, described by HELP, with VALUE to OUT. */
+    private static void gauge(PrintWriter out, String name, String help,
+                              long value) {
+        out.printf(Locale.ROOT, "# HELP %s %s%n# TYPE %s gauge%n%s %d%n",
+                   name, help, name, name, value);
+    }
+
+    /** Time (ms) allowed to a client for sending each part of its
+     *  request, so that a stalled client cannot block the server. */
+    private static final int REQUEST_TIMEOUT = 5000;
+    /** Media type of the exported metrics. */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    /** Move latencies (ms). */
+    private final Histogram _moveLatency = new Histogram();
+    /** Nodes searched, and time spent searching (ms). */
+    private final LongAdder _nodes = new LongAdder(),
+        _searchMillis = new LongAdder();
+    /** Tablebase probes, and those that found the position. */
+    private final LongAdder _tablebaseProbes = new LongAdder(),
+        _tablebaseHits = new LongAdder();
+    /** Games finished, by the ordinal of the winner (EMP for ties). */
+    private final LongAdder[] _games = {
+        new LongAdder(), new LongAdder(), new LongAdder()
+    };
+}
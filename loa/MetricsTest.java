@@ -0,0 +1,77 @@
+package loa;
+
+import java.util.Locale;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Metrics.
+ *  @author Shivang Singh
+ */
+public class MetricsTest {
+
+    /** Test that each value falls in a bucket whose upper bound is at
+     *  least the value and within 25% of it, and above the bound of the
+     *  bucket before. */
+    @Test
+    public void testBuckets() {
+        long[] values = {
+            0, 1, 3, 4, 5, 7, 8, 9, 15, 16, 100, 1000, 65535, 65536,
+            123456789, 1L << 40, Long.MAX_VALUE
+        };
+        for (long value : values) {
+            int bucket = Metrics.Histogram.bucket(value);
+            long bound = Metrics.Histogram.upperBound(bucket);
+            assertTrue("bucket of " + value,
+                       bucket >= 0 && bucket < Metrics.Histogram.NUM_BUCKETS);
+            assertTrue("bound of " + value, value <= bound);
+            assertTrue("accuracy at " + value, bound - value <= value / 4);
+            if (bucket > 0) {
+                assertTrue("previous bound of " + value,
+                           Metrics.Histogram.upperBound(bucket - 1) < value);
+            }
+        }
+        for (int bucket = 1; bucket < Metrics.Histogram.NUM_BUCKETS;
+             bucket += 1) {
+            long bound = Metrics.Histogram.upperBound(bucket - 1);
+            assertEquals("bucket after " + bound, bucket,
+                         Metrics.Histogram.bucket(bound + 1));
+        }
+    }
+
+    /** Test the quantiles of the values 1 to 100. */
+    @Test
+    public void testQuantiles() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        assertEquals("empty", 0, histogram.quantile(0.5));
+        for (int value = 1; value <= 100; value += 1) {
+            histogram.record(value);
+        }
+        assertEquals("count", 100, histogram.count());
+        assertEquals("sum", 5050, histogram.sum());
+        assertEquals("p50", 55, histogram.quantile(0.5));
+        assertEquals("p90", 95, histogram.quantile(0.9));
+        assertEquals("p99", 111, histogram.quantile(0.99));
+    }
+
+    /** Test that the exported text does not depend on the default
+     *  locale. */
+    @Test
+    public void testTextLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            Metrics metrics = new Metrics();
+            metrics.recordMove(1234567);
+            metrics.recordSearch(1234567, 1000);
+            String text = metrics.toText();
+            assertTrue("quantile label", text.contains(
+                "loa_move_latency_ms{quantile=\"0.5\"} 1310719"));
+            assertTrue("counter", text.contains("\nloa_nodes_total 1234567"));
+            assertTrue("gauge", text.matches(
+                "(?s).*\nloa_gc_share \\d+\\.\\d{6}\\s.*"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
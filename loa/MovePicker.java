@@ -0,0 +1,146 @@
+package loa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static loa.Piece.*;
+
+/** Yields the legal moves of a position one at a time in search order,
+ *  generating each group only when the previous one is exhausted: first
+ *  the hash move (if legal), with no generation at all, then captures,
+ *  then killer moves (quiet moves that caused cutoffs at the same ply,
+ *  checked individually), and finally the remaining quiet moves.  A
+ *  search that cuts off early thus never generates the quiet moves.
+ *  The position must not change while the picker is in use.
+ *  @author Shivang Singh
+ */
+class MovePicker {
+
+    /** A picker for the moves on BOARD that tries HASHMOVE and then
+     *  KILLERS (whose elements may be null or illegal) first. */
+    MovePicker(Board board, Move hashMove, Move[] killers) {
+        _board = board;
+        _hashMove = hashMove;
+        _killers = killers;
+    }
+
+    /** Return the next move, or null if there are no more. */
+    Move next() {
+        while (true) {
+            switch (_stage) {
+            case HASH:
+                _stage = CAPTURES;
+                if (_board.generates(_hashMove)) {
+                    _capture = isCapture(_hashMove);
+                    return _hashMove;
+                }
+                break;
+            case CAPTURES:
+                if (_moves == null) {
+                    _moves = new ArrayList<>();
+                    _board.addMoves(_moves, Board.CAPTURES);
+                }
+                while (_next < _moves.size()) {
+                    Move mv = _moves.get(_next);
+                    _next += 1;
+                    if (mv != _hashMove) {
+                        _capture = true;
+                        return mv;
+                    }
+                }
+                _stage = _skipQuiets ? DONE : KILLERS;
+                break;
+            case KILLERS:
+                while (!_skipQuiets && _killer < _killers.length) {
+                    Move mv = _killers[_killer];
+                    _killer += 1;
+                    if (mv != null && mv != _hashMove && !isCapture(mv)
+                        && !isEarlierKiller(mv) && _board.generates(mv)) {
+                        _capture = false;
+                        return mv;
+                    }
+                }
+                if (_skipQuiets) {
+                    _stage = DONE;
+                    break;
+                }
+                _stage = QUIETS;
+                _moves.clear();
+                _next = 0;
+                _board.addMoves(_moves, Board.QUIET_MOVES);
+                break;
+            case QUIETS:
+                while (!_skipQuiets && _next < _moves.size()) {
+                    Move mv = _moves.get(_next);
+                    _next += 1;
+                    if (mv != _hashMove && !isKiller(mv)) {
+                        _capture = false;
+                        return mv;
+                    }
+                }
+                _stage = DONE;
+                break;
+            default:
+                return null;
+            }
+        }
+    }
+
+    /** Return true iff the last move returned by next() is a capture. */
+    boolean isCapture() {
+        return _capture;
+    }
+
+    /** Yield no more quiet moves (other than the hash move, if it has
+     *  already been returned).  Quiet moves not yet generated never
+     *  are. */
+    void skipQuiets() {
+        _skipQuiets = true;
+    }
+
+    /** Return true iff MV captures on my board. */
+    private boolean isCapture(Move mv) {
+        return _board.get(mv.getTo()) != EMP;
+    }
+
+    /** Return true iff MV is one of the killers. */
+    private boolean isKiller(Move mv) {
+        for (Move killer : _killers) {
+            if (mv == killer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return true iff MV is among the killers already considered. */
+    private boolean isEarlierKiller(Move mv) {
+        for (int k = 0; k < _killer - 1; k += 1) {
+            if (mv == _killers[k]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Stages of move generation. */
+    private static final int HASH = 0, CAPTURES = 1, KILLERS = 2,
+        QUIETS = 3, DONE = 4;
+
+    /** The position whose moves I yield. */
+    private final Board _board;
+    /** Move to try first, or null. */
+    private final Move _hashMove;
+    /** Quiet moves to try before the others. */
+    private final Move[] _killers;
+    /** Current stage. */
+    private int _stage = HASH;
+    /** Moves generated for the current stage. */
+    private List<Move> _moves;
+    /** Index of the next move in _moves, and of the next killer. */
+    private int _next, _killer;
+    /** True iff the last move returned is a capture. */
+    private boolean _capture;
+    /** True iff quiet moves are no longer wanted. */
+    private boolean _skipQuiets;
+}
@@ -0,0 +1,83 @@
+package loa;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+
+/** Tests of MovePicker.
+ *  @author Shivang Singh
+ */
+public class MovePickerTest {
+
+    /** Test that, whatever the hash move and killers, a picker yields each
+     *  legal move exactly once, and that after skipQuiets is called on its
+     *  first move it yields only captures. */
+    @Test
+    public void testEachMoveOnce() {
+        Random random = new Random(40);
+        Board board = new Board(BoardTest.BOARD1, BP);
+        for (int n = 0; n < 200; n += 1) {
+            List<Move> legal = board.legalMoves();
+            if (legal.isEmpty()) {
+                board = new Board(BoardTest.BOARD1, BP);
+                continue;
+            }
+            Move[] killers = new Move[1 + random.nextInt(3)];
+            for (int k = 0; k < killers.length; k += 1) {
+                killers[k] = randomMove(random, legal);
+            }
+            Move hashMove = randomMove(random, legal);
+            List<Move> picked = pick(board, hashMove, killers, false);
+            assertEquals("no repeats", picked.size(),
+                         new HashSet<>(picked).size());
+            assertEquals("all moves", new HashSet<>(legal),
+                         new HashSet<>(picked));
+            List<Move> skipped = pick(board, hashMove, killers, true);
+            for (Move mv : skipped.subList(1, skipped.size())) {
+                assertTrue("only captures after skipQuiets",
+                           board.get(mv.getTo()) != EMP);
+            }
+            board.makeMove(legal.get(random.nextInt(legal.size())));
+            if (board.gameOver()) {
+                board = new Board(BoardTest.BOARD1, BP);
+            }
+        }
+    }
+
+    /** Return the moves a picker yields on BOARD given HASHMOVE and
+     *  KILLERS, calling skipQuiets after the first iff SKIP. */
+    private static List<Move> pick(Board board, Move hashMove,
+                                   Move[] killers, boolean skip) {
+        MovePicker picker = new MovePicker(board, hashMove, killers);
+        List<Move> result = new ArrayList<>();
+        for (Move mv = picker.next(); mv != null; mv = picker.next()) {
+            assertEquals("isCapture", board.get(mv.getTo()) != EMP,
+                         picker.isCapture());
+            result.add(mv);
+            if (skip) {
+                picker.skipQuiets();
+            }
+        }
+        return result;
+    }
+
+    /** Return null, a random move (usually illegal), or one of LEGAL. */
+    private static Move randomMove(Random random, List<Move> legal) {
+        switch (random.nextInt(3)) {
+        case 0:
+            return null;
+        case 1:
+            Square from = Square.ALL_SQUARES[random.nextInt(64)],
+                to = Square.ALL_SQUARES[random.nextInt(64)];
+            return from == to ? null : Move.mv(from, to);
+        default:
+            return legal.get(random.nextInt(legal.size()));
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package loa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static loa.Piece.*;
+import static loa.Square.BOARD_SIZE;
+import static loa.Square.NUM_SQUARES;
+
+/** A small neural evaluator, efficiently updatable in the manner of NNUE.
+ *  Its inputs are one per side and square, seen from each side in turn:
+ *  the side's own pieces, then its opponent's, with the board transposed
+ *  for black so that both sides' starting pieces look alike.  A hidden
+ *  layer of hidden() units, the same for both views, sums the weights of
+ *  the inputs present; an Accumulator keeps those sums for both views and
+ *  adjusts them as single pieces come and go, so a move costs a
+ *  subtraction (and an addition, and another subtraction for a capture)
+ *  of one row of weights per view.
+ *
+ *  The output is the dot product of the output weights with the clipped
+ *  (to 0 .. CLIP) sums of the side to move's view followed by the other
+ *  side's, plus a bias, divided by a scale: a value for the side to move
+ *  in the units of MachinePlayer.heuristic.  All weights are integers, so
+ *  evaluation needs only integer arithmetic.
+ *
+ *  The file holds, as big-endian integers, MAGIC, FORMAT, hidden() and
+ *  the output scale, then the input weights as shorts (hidden() for each
+ *  of the 2 * NUM_SQUARES inputs in turn), the hidden biases as shorts,
+ *  the 2 * hidden() output weights as shorts, and the output bias as an
+ *  int.  Networks are trained offline, for example on the output of
+ *  TrainingData, and quantised to this form.
+ *  @author Shivang Singh
+ */
+final class Network {
+
+    /** Identifies a network file. */
+    static final int MAGIC = 0x4c4f414e;
+    /** Version of the file format. */
+    static final int FORMAT = 1;
+    /** Number of inputs of each view. */
+    static final int INPUTS = 2 * NUM_SQUARES;
+    /** Largest number of hidden units. */
+    static final int MAX_HIDDEN = 1024;
+    /** Largest value of a hidden unit after clipping. */
+    static final int CLIP = 127;
+    /** Largest magnitude of a value, far below those of decided
+     *  positions. */
+    static final int MAX_VALUE = 1 << 20;
+
+    /** A network with HIDDEN hidden units, input weights INPUTWEIGHTS
+     *  (HIDDEN for each input in turn), hidden biases HIDDENBIAS, output
+     *  weights OUTPUTWEIGHTS (HIDDEN for the side to move's view, then
+     *  HIDDEN for the other), output bias OUTPUTBIAS and output scale
+     *  SCALE. */
+    Network(int hidden, short[] inputWeights, short[] hiddenBias,
+            short[] outputWeights, int outputBias, int scale) {
+        if (hidden < 1 || hidden > MAX_HIDDEN
+            || inputWeights.length != INPUTS * hidden
+            || hiddenBias.length != hidden
+            || outputWeights.length != 2 * hidden || scale < 1) {
+            throw new IllegalArgumentException("bad network dimensions");
+        }
+        _hidden = hidden;
+        _inputWeights = inputWeights;
+        _hiddenBias = hiddenBias;
+        _outputWeights = outputWeights;
+        _outputBias = outputBias;
+        _scale = scale;
+    }
+
+    /** Return the network in FILE. */
+    static Network load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("not a network: " + file);
+            }
+            int hidden = in.readInt(), scale = in.readInt();
+            if (hidden < 1 || hidden > MAX_HIDDEN || scale < 1) {
+                throw new IOException("bad network header: " + file);
+            }
+            short[] inputWeights = readShorts(in, INPUTS * hidden);
+            short[] hiddenBias = readShorts(in, hidden);
+            short[] outputWeights = readShorts(in, 2 * hidden);
+            int outputBias = in.readInt();
+            return new Network(hidden, inputWeights, hiddenBias,
+                               outputWeights, outputBias, scale);
+        }
+    }
+
+    /** Write me to FILE in the form read by load. */
+    void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(_hidden);
+            out.writeInt(_scale);
+            writeShorts(out, _inputWeights);
+            writeShorts(out, _hiddenBias);
+            writeShorts(out, _outputWeights);
+            out.writeInt(_outputBias);
+        }
+    }
+
+    /** Return the next N shorts of IN. */
+    private static short[] readShorts(DataInputStream in, int n)
+        throws IOException {
+        short[] result = new short[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = in.readShort();
+        }
+        return result;
+    }
+
+    /** Write VALUES to OUT. */
+    private static void writeShorts(DataOutputStream out, short[] values)
+        throws IOException {
+        for (short v : values) {
+            out.writeShort(v);
+        }
+    }
+
+    /** Return a hash of my weights, which identifies the values I give. */
+    long identity() {
+        long result = (long) _hidden * _scale + _outputBias;
+        for (short[] weights
+                 : new short[][] { _inputWeights, _hiddenBias,
+                                   _outputWeights }) {
+            for (short w : weights) {
+                result = (result + w) * IDENTITY_MULTIPLIER;
+            }
+        }
+        return result;
+    }
+
+    /** Return my number of hidden units. */
+    int hidden() {
+        return _hidden;
+    }
+
+    /** Return the input, in the view of side VIEW, of a piece of side SIDE
+     *  on the square with index INDEX. */
+    static int input(int view, int side, int index) {
+        if (view == BP.ordinal()) {
+            index = (index % BOARD_SIZE) * BOARD_SIZE + index / BOARD_SIZE;
+        }
+        return side == view ? index : NUM_SQUARES + index;
+    }
+
+    /** Return the value of the position whose sums are in ACCUMULATOR with
+     *  TURN to move, positive if it favours white and at most MAX_VALUE in
+     *  magnitude. */
+    int evaluate(Accumulator accumulator, Piece turn) {
+        int[] own = accumulator._sums[turn.ordinal()],
+            other = accumulator._sums[turn.opposite().ordinal()];
+        long sum = _outputBias;
+        for (int j = 0; j < _hidden; j += 1) {
+            sum += clip(own[j]) * _outputWeights[j]
+                + clip(other[j]) * _outputWeights[_hidden + j];
+        }
+        int value = (int) Math.max(-MAX_VALUE,
+                                   Math.min(MAX_VALUE, sum / _scale));
+        return turn == WP ? value : -value;
+    }
+
+    /** Return X limited to 0 .. CLIP. */
+    private static int clip(int x) {
+        return Math.max(0, Math.min(CLIP, x));
+    }
+
+    /** The sums of the hidden units of a Network for both views of a
+     *  position, kept up to date as pieces are added and removed. */
+    final class Accumulator {
+
+        /** The sums for an empty board. */
+        Accumulator() {
+            refresh(0, 0);
+        }
+
+        /** Set my sums to those of the position with pieces BLACK and
+         *  WHITE (bitboards as from Board.pieceBits). */
+        void refresh(long black, long white) {
+            for (int[] sums : _sums) {
+                for (int j = 0; j < _hidden; j += 1) {
+                    sums[j] = _hiddenBias[j];
+                }
+            }
+            for (long bits = black; bits != 0; bits &= bits - 1) {
+                add(BP.ordinal(), Long.numberOfTrailingZeros(bits), 1);
+            }
+            for (long bits = white; bits != 0; bits &= bits - 1) {
+                add(WP.ordinal(), Long.numberOfTrailingZeros(bits), 1);
+            }
+        }
+
+        /** Add to my sums SIGN times the weights of a piece of side SIDE
+         *  on the square with index INDEX. */
+        void add(int side, int index, int sign) {
+            for (int view = 0; view < _sums.length; view += 1) {
+                int[] sums = _sums[view];
+                int row = input(view, side, index) * _hidden;
+                for (int j = 0; j < _hidden; j += 1) {
+                    sums[j] += sign * _inputWeights[row + j];
+                }
+            }
+        }
+
+        /** Return the network whose sums I keep. */
+        Network network() {
+            return Network.this;
+        }
+
+        /** Return the sum of hidden unit J in the view of side VIEW. */
+        int sum(int view, int j) {
+            return _sums[view][j];
+        }
+
+        /** The sums, by view (side ordinal) and hidden unit. */
+        private final int[][] _sums = new int[2][_hidden];
+    }
+
+    /** Multiplier of the hash computed by identity. */
+    private static final long IDENTITY_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    /** Number of hidden units. */
+    private final int _hidden;
+    /** Weights of the inputs, _hidden for each input in turn. */
+    private final short[] _inputWeights;
+    /** Biases of the hidden units. */
+    private final short[] _hiddenBias;
+    /** Weights of the clipped hidden units of the side to move's view,
+     *  then of the other side's. */
+    private final short[] _outputWeights;
+    /** Bias of the output. */
+    private final int _outputBias;
+    /** Divisor taking the output to the units of the heuristic. */
+    private final int _scale;
+}
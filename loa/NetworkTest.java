@@ -0,0 +1,67 @@
+package loa;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+
+/** Tests of Network.
+ *  @author Shivang Singh
+ */
+public class NetworkTest {
+
+    /** Test that a network's accumulator, updated as moves are made and
+     *  retracted, agrees with one computed afresh, and that networks
+     *  survive saving and loading. */
+    @Test
+    public void testAccumulator() throws IOException {
+        Random random = new Random(7);
+        int hidden = 8;
+        short[] inputs = new short[Network.INPUTS * hidden],
+            biases = new short[hidden], outputs = new short[2 * hidden];
+        for (int i = 0; i < inputs.length; i += 1) {
+            inputs[i] = (short) (random.nextInt(41) - 20);
+        }
+        for (int i = 0; i < outputs.length; i += 1) {
+            outputs[i] = (short) (random.nextInt(201) - 100);
+        }
+        Network net = new Network(hidden, inputs, biases, outputs, 5, 16);
+        File file = File.createTempFile("loa", ".net");
+        file.deleteOnExit();
+        net.save(file);
+        Network loaded = Network.load(file);
+        assertEquals("identity", net.identity(), loaded.identity());
+        assertNotEquals("evaluator", MachinePlayer.evaluatorIdentity(null),
+                        MachinePlayer.evaluatorIdentity(net));
+        short[] changed = outputs.clone();
+        changed[0] += 1;
+        assertNotEquals("changed weights", net.identity(),
+                        new Network(hidden, inputs, biases, changed, 5, 16)
+                        .identity());
+        Board b = new Board(BoardTest.BOARD1, BP);
+        b.setNetwork(net);
+        for (int k = 0; k < 40 && !b.gameOver(); k += 1) {
+            List<Move> moves = b.legalMoves();
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            if (k % 3 == 2) {
+                b.retract();
+            }
+            Board fresh = new Board(BoardTest.contents(b), b.turn());
+            fresh.setNetwork(loaded);
+            for (int view = 0; view < 2; view += 1) {
+                for (int j = 0; j < hidden; j += 1) {
+                    assertEquals("sum", fresh.accumulator().sum(view, j),
+                                 b.accumulator().sum(view, j));
+                }
+            }
+            assertEquals("value",
+                         loaded.evaluate(fresh.accumulator(), b.turn()),
+                         net.evaluate(b.accumulator(), b.turn()));
+        }
+    }
+}
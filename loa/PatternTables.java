@@ -0,0 +1,303 @@
+package loa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static loa.Piece.*;
+import static loa.Square.BOARD_SIZE;
+import static loa.Square.NUM_SQUARES;
+
+/** Score tables for local patterns of pieces, giving the positional part
+ *  of MachinePlayer.heuristic by table lookup.  The patterns are the 3x3
+ *  windows centred on each square (cells off the board count as empty)
+ *  and the rows and columns.  Each cell is 0 (empty), 1 (black) or 2
+ *  (white), and a pattern's index is the sum of its cells' codes times
+ *  powers of 3: 3**(3 * (dr + 1) + dc + 1) for the cell at offset (dc, dr)
+ *  from a window's centre, and 3**k for the cell in column (of a row) or
+ *  row (of a column) k.  A Board keeps the indices of all its patterns,
+ *  and the sum of their scores, up to date as squares change (see
+ *  change), so a position's score costs nothing to look up.
+ *
+ *  Scores are positive when they favour white.  The standard tables
+ *  reward each piece for its neighbours of its own colour, and penalise
+ *  it if it has none (in the windows), and reward central pieces and
+ *  penalise the gaps between a side's pieces in each row and column (in
+ *  the lines).  Other tables, tuned offline, are read at start-up from
+ *  the file named by the system property loa.patterns; the file holds, as
+ *  big-endian ints, MAGIC, FORMAT, and the scores of the WINDOW_PATTERNS
+ *  windows and LINE_PATTERNS lines in order of index.  'java
+ *  loa.PatternTables FILE' writes the standard tables in that form.
+ *  @author Shivang Singh
+ */
+final class PatternTables {
+
+    /** Identifies a pattern-table file. */
+    static final int MAGIC = 0x4c4f4150;
+    /** Version of the file format. */
+    static final int FORMAT = 1;
+    /** Number of windows and lines. */
+    static final int NUM_WINDOWS = NUM_SQUARES, NUM_LINES = 2 * BOARD_SIZE;
+    /** Number of distinct windows and lines. */
+    static final int WINDOW_PATTERNS = 19683, LINE_PATTERNS = 6561;
+
+    /* The standard weights put typical positional differences in the
+     * hundreds, the scale for which MachinePlayer's pruning margins (such
+     * as FUTILITY_MARGIN) were chosen.  At an eighth of these weights,
+     * scores are so small against the margins that hardly any node is
+     * pruned, and the bench tree grows eightfold. */
+
+    /** Score of each friendly neighbour of a piece, up to
+     *  MAX_NEIGHBOURS of them. */
+    static final int NEIGHBOUR_WEIGHT = 32;
+    /** Largest number of neighbours scored. */
+    static final int MAX_NEIGHBOURS = 4;
+    /** Penalty for a piece with no friendly neighbour. */
+    static final int ISOLATED_WEIGHT = 80;
+    /** Score of each step of a piece from the edge towards the centre of
+     *  a line. */
+    static final int CENTRE_WEIGHT = 16;
+    /** Penalty for each empty or enemy square between a side's pieces in
+     *  a line. */
+    static final int GAP_WEIGHT = 24;
+
+    /** Return the tables in use: those in the file named by loa.patterns
+     *  if it is set and readable, and the standard tables otherwise. */
+    static PatternTables get() {
+        return INSTANCE;
+    }
+
+    /** Tables with window scores WINDOWS and line scores LINES. */
+    PatternTables(int[] windows, int[] lines) {
+        if (windows.length != WINDOW_PATTERNS
+            || lines.length != LINE_PATTERNS) {
+            throw new IllegalArgumentException("bad pattern tables");
+        }
+        _windows = windows;
+        _lines = lines;
+    }
+
+    /** Return the standard tables. */
+    static PatternTables standard() {
+        int[] windows = new int[WINDOW_PATTERNS];
+        int[] cells = new int[9];
+        for (int index = 0; index < WINDOW_PATTERNS; index += 1) {
+            decode(index, cells);
+            int centre = cells[4];
+            if (centre != 0) {
+                int neighbours = -1;
+                for (int cell : cells) {
+                    if (cell == centre) {
+                        neighbours += 1;
+                    }
+                }
+                int score = NEIGHBOUR_WEIGHT
+                    * Math.min(neighbours, MAX_NEIGHBOURS);
+                if (neighbours == 0) {
+                    score -= ISOLATED_WEIGHT;
+                }
+                windows[index] = centre == WHITE ? score : -score;
+            }
+        }
+        int[] lines = new int[LINE_PATTERNS];
+        cells = new int[BOARD_SIZE];
+        for (int index = 0; index < LINE_PATTERNS; index += 1) {
+            decode(index, cells);
+            lines[index] = lineScore(cells, WHITE) - lineScore(cells, BLACK);
+        }
+        return new PatternTables(windows, lines);
+    }
+
+    /** Return the standard score of the pieces coded SIDE in the line
+     *  whose cells have codes CELLS. */
+    private static int lineScore(int[] cells, int side) {
+        int score = 0, first = -1, last = -1, count = 0;
+        for (int k = 0; k < cells.length; k += 1) {
+            if (cells[k] == side) {
+                score += CENTRE_WEIGHT * Math.min(k, cells.length - 1 - k);
+                first = first < 0 ? k : first;
+                last = k;
+                count += 1;
+            }
+        }
+        if (count > 1) {
+            score -= GAP_WEIGHT * (last - first + 1 - count);
+        }
+        return score;
+    }
+
+    /** Set CELLS to the codes of the cells of the pattern with index
+     *  INDEX. */
+    private static void decode(int index, int[] cells) {
+        for (int k = 0; k < cells.length; k += 1) {
+            cells[k] = index % 3;
+            index /= 3;
+        }
+    }
+
+    /** Return the tables in FILE. */
+    static PatternTables load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("not a pattern-table file: " + file);
+            }
+            int[] windows = new int[WINDOW_PATTERNS];
+            for (int i = 0; i < windows.length; i += 1) {
+                windows[i] = in.readInt();
+            }
+            int[] lines = new int[LINE_PATTERNS];
+            for (int i = 0; i < lines.length; i += 1) {
+                lines[i] = in.readInt();
+            }
+            return new PatternTables(windows, lines);
+        }
+    }
+
+    /** Write me to FILE in the form read by load. */
+    void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            for (int score : _windows) {
+                out.writeInt(score);
+            }
+            for (int score : _lines) {
+                out.writeInt(score);
+            }
+        }
+    }
+
+    /** Return a hash of my scores, which identifies the values they
+     *  give. */
+    long identity() {
+        long result = 0;
+        for (int[] scores : new int[][] { _windows, _lines }) {
+            for (int score : scores) {
+                result = (result + score) * IDENTITY_MULTIPLIER;
+            }
+        }
+        return result;
+    }
+
+    /** Return the code of a cell containing P (null for empty). */
+    static int code(Piece p) {
+        return p == BP ? BLACK : p == WP ? WHITE : 0;
+    }
+
+    /** Return the total score of an empty board. */
+    int emptyScore() {
+        return NUM_WINDOWS * _windows[0] + NUM_LINES * _lines[0];
+    }
+
+    /** Return the total score of a board whose pattern indices are
+     *  WINDOWS and LINES. */
+    int score(int[] windows, int[] lines) {
+        int result = 0;
+        for (int w : windows) {
+            result += _windows[w];
+        }
+        for (int l : lines) {
+            result += _lines[l];
+        }
+        return result;
+    }
+
+    /** Update the pattern indices WINDOWS and LINES of a board for a
+     *  change of the square with index SQUARE from code OLD to code
+     *  NOW, and return the resulting change of its total score. */
+    int change(int[] windows, int[] lines, int square, int old, int now) {
+        int delta = now - old, result = 0;
+        int[] ids = SQUARE_WINDOWS[square], powers = WINDOW_POWERS[square];
+        for (int k = 0; k < ids.length; k += 1) {
+            int w = ids[k];
+            result -= _windows[windows[w]];
+            windows[w] += delta * powers[k];
+            result += _windows[windows[w]];
+        }
+        int row = square / BOARD_SIZE, col = square % BOARD_SIZE;
+        result -= _lines[lines[row]] + _lines[lines[BOARD_SIZE + col]];
+        lines[row] += delta * POWERS[col];
+        lines[BOARD_SIZE + col] += delta * POWERS[row];
+        result += _lines[lines[row]] + _lines[lines[BOARD_SIZE + col]];
+        return result;
+    }
+
+    /** Write the standard tables to the file ARGS[0], for tuning. */
+    public static void main(String... args) {
+        if (args.length != 1) {
+            Utils.error(1, "Usage: java loa.PatternTables FILE%n");
+        }
+        try {
+            standard().save(new File(args[0]));
+        } catch (IOException excp) {
+            Utils.error(1, "cannot write pattern tables: %s%n",
+                        excp.getMessage());
+        }
+    }
+
+    /** Return the tables named by the system property loa.patterns, or the
+     *  standard tables if it is unset or the file cannot be read. */
+    private static PatternTables loadTables() {
+        String name = System.getProperty("loa.patterns");
+        if (name != null) {
+            try {
+                return load(new File(name));
+            } catch (IOException excp) {
+                Utils.error("cannot load pattern tables: %s%n",
+                            excp.getMessage());
+            }
+        }
+        return standard();
+    }
+
+    /** Codes of black and white cells. */
+    private static final int BLACK = 1, WHITE = 2;
+    /** Multiplier of the hash computed by identity. */
+    private static final long IDENTITY_MULTIPLIER = 0x9e3779b97f4a7c15L;
+    /** POWERS[K] is 3**K. */
+    private static final int[] POWERS = new int[9];
+    /** SQUARE_WINDOWS[S] lists the windows (by the index of their centres)
+     *  containing the square with index S, and WINDOW_POWERS[S][k] is the
+     *  power of 3 of S's cell in window SQUARE_WINDOWS[S][k]. */
+    private static final int[][]
+        SQUARE_WINDOWS = new int[NUM_SQUARES][],
+        WINDOW_POWERS = new int[NUM_SQUARES][];
+
+    static {
+        POWERS[0] = 1;
+        for (int k = 1; k < POWERS.length; k += 1) {
+            POWERS[k] = 3 * POWERS[k - 1];
+        }
+        for (int s = 0; s < NUM_SQUARES; s += 1) {
+            int row = s / BOARD_SIZE, col = s % BOARD_SIZE, n = 0;
+            int[] ids = new int[9], powers = new int[9];
+            for (int dr = -1; dr <= 1; dr += 1) {
+                for (int dc = -1; dc <= 1; dc += 1) {
+                    int r = row - dr, c = col - dc;
+                    if (r >= 0 && r < BOARD_SIZE
+                        && c >= 0 && c < BOARD_SIZE) {
+                        ids[n] = r * BOARD_SIZE + c;
+                        powers[n] = POWERS[3 * (dr + 1) + dc + 1];
+                        n += 1;
+                    }
+                }
+            }
+            SQUARE_WINDOWS[s] = Arrays.copyOf(ids, n);
+            WINDOW_POWERS[s] = Arrays.copyOf(powers, n);
+        }
+    }
+
+    /** The tables in use. */
+    private static final PatternTables INSTANCE = loadTables();
+
+    /** Scores of the windows and lines, by index. */
+    private final int[] _windows, _lines;
+}
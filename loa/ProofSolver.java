@@ -0,0 +1,226 @@
+package loa;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** A depth-first proof-number (df-pn) solver for forced connections.
+ *  Given a position, it proves or disproves that the side to move (the
+ *  attacker) can force a win within a number of its moves, whatever the
+ *  defender does.  The game's own terminal tests (Board.winner, hence
+ *  piecesContiguous and the move limit) decide the leaves; positions
+ *  beyond the horizon count as failures of the attacker, as do ties.
+ *
+ *  Each node has proof and disproof numbers, kept from the point of view
+ *  of the side to move there as PHI (the cost of proving that the side to
+ *  move succeeds) and DELTA (of proving that it fails).  They are stored
+ *  in a fixed-size, always-replace table of two longs per entry, keyed
+ *  by the position and the plies remaining, so the search needs no tree
+ *  in memory and its footprint does not grow with its node budget.
+ *  @author Shivang Singh
+ */
+final class ProofSolver {
+
+    /** Results of solve. */
+    static final int PROVEN = 1, DISPROVEN = -1, UNKNOWN = 0;
+
+    /** Default log2 of the number of table entries. */
+    static final int DEFAULT_TABLE_BITS = 18;
+
+    /** A solver with a table of 2**DEFAULT_TABLE_BITS entries. */
+    ProofSolver() {
+        this(DEFAULT_TABLE_BITS);
+    }
+
+    /** A solver with a table of 2**TABLEBITS entries. */
+    ProofSolver(int tableBits) {
+        _keys = new long[1 << tableBits];
+        _entries = new long[1 << tableBits];
+        _shift = Long.SIZE - tableBits;
+    }
+
+    /** Try to prove that the side to move in POSITION, which is not
+     *  modified, can force a win within MOVES of its moves, visiting at
+     *  most MAXNODES positions (0 for no limit).  Wins are sought in one
+     *  move, then two, and so on, so a proof is of the quickest win.
+     *  Returns PROVEN (see winningMove and movesToWin), DISPROVEN if there
+     *  is no such win, or UNKNOWN if the node budget ran out or the search
+     *  was stopped.  Assumes the game is not over. */
+    int solve(Board position, int moves, long maxNodes) {
+        Board board = new Board(position);
+        _attacker = board.turn();
+        _nodeLimit = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+        _nodes = 0;
+        _winningMove = null;
+        _movesToWin = 0;
+        Arrays.fill(_keys, 0);
+        try {
+            for (int m = 1; m <= moves; m += 1) {
+                _rootPlies = 2 * m - 1;
+                mid(board, _rootPlies, INF, INF);
+                if (_stopped) {
+                    return UNKNOWN;
+                }
+                if (_winningMove != null) {
+                    _movesToWin = m;
+                    return PROVEN;
+                }
+            }
+            return DISPROVEN;
+        } finally {
+            _stopped = false;
+        }
+    }
+
+    /** Stop the current solve, or if none is running, the next one, which
+     *  then returns UNKNOWN.  May be called from any thread. */
+    void stop() {
+        _stopped = true;
+    }
+
+    /** Return the first move of the win proved by the last solve. */
+    Move winningMove() {
+        return _winningMove;
+    }
+
+    /** Return the number of the attacker's moves in the win proved by the
+     *  last solve. */
+    int movesToWin() {
+        return _movesToWin;
+    }
+
+    /** Return the number of positions visited by the last solve. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Expand BOARD, with REMAINING plies left, until its PHI reaches
+     *  THPHI or its DELTA reaches THDELTA, or the solve is stopped.
+     *  Records its numbers in the table and returns them packed.  The
+     *  numbers of the children are kept in a local array for the life of
+     *  the expansion, so that table collisions cannot undo progress. */
+    private long mid(Board board, int remaining, int thPhi, int thDelta) {
+        long key = key(board, remaining);
+        _nodes += 1;
+        if (_nodes >= _nodeLimit) {
+            _stopped = true;
+        }
+        if (board.gameOver() || remaining == 0) {
+            long entry = leaf(board);
+            store(key, entry);
+            return entry;
+        }
+        List<Move> moves = board.legalMoves();
+        long[] children = new long[moves.size()];
+        for (int i = 0; i < children.length; i += 1) {
+            board.makeMove(moves.get(i));
+            children[i] = board.gameOver() || remaining == 1 ? leaf(board)
+                : lookup(key(board, remaining - 1));
+            board.retract();
+        }
+        while (true) {
+            int phi = INF, delta2 = INF, best = 0;
+            long delta = 0;
+            for (int i = 0; i < children.length; i += 1) {
+                int childDelta = delta(children[i]);
+                delta = Math.min(INF, delta + phi(children[i]));
+                if (childDelta < phi) {
+                    delta2 = phi;
+                    phi = childDelta;
+                    best = i;
+                } else if (childDelta < delta2) {
+                    delta2 = childDelta;
+                }
+            }
+            if (phi >= thPhi || delta >= thDelta || _stopped) {
+                long entry = pack(phi, (int) delta);
+                store(key, entry);
+                if (phi == 0 && remaining == _rootPlies) {
+                    _winningMove = moves.get(best);
+                }
+                return entry;
+            }
+            int childThPhi = (int) Math.min(INF, thDelta - delta
+                                            + phi(children[best]));
+            int childThDelta = (int) Math.min(thPhi, delta2 + 1L);
+            board.makeMove(moves.get(best));
+            children[best] =
+                mid(board, remaining - 1, childThPhi, childThDelta);
+            board.retract();
+        }
+    }
+
+    /** Return the packed numbers of BOARD, on which the game is over or
+     *  no plies remain. */
+    private long leaf(Board board) {
+        boolean attackerWon = board.winner() == _attacker;
+        boolean attackerToMove = board.turn() == _attacker;
+        return attackerWon == attackerToMove ? pack(0, INF) : pack(INF, 0);
+    }
+
+    /** Return the table key of BOARD with REMAINING plies left. */
+    private static long key(Board board, int remaining) {
+        return Symmetry.key(board) + remaining * PLY_KEY;
+    }
+
+    /** Return the packed numbers stored for KEY, or those of an
+     *  unexpanded node if there are none. */
+    private long lookup(long key) {
+        int h = index(key);
+        return _keys[h] == key ? _entries[h] : UNEXPANDED;
+    }
+
+    /** Record the packed numbers ENTRY for KEY. */
+    private void store(long key, long entry) {
+        int h = index(key);
+        _keys[h] = key;
+        _entries[h] = entry;
+    }
+
+    /** Return the table index of KEY. */
+    private int index(long key) {
+        return (int) ((key * INDEX_MULTIPLIER) >>> _shift);
+    }
+
+    /** Return PHI and DELTA packed into a long. */
+    private static long pack(int phi, int delta) {
+        return ((long) phi << 32) | delta;
+    }
+
+    /** Return the PHI of packed ENTRY. */
+    private static int phi(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /** Return the DELTA of packed ENTRY. */
+    private static int delta(long entry) {
+        return (int) entry;
+    }
+
+    /** An infinite proof or disproof number (node solved). */
+    private static final int INF = Integer.MAX_VALUE / 2;
+    /** Packed numbers of a node not yet expanded. */
+    private static final long UNEXPANDED = pack(1, 1);
+    /** Multiplier distinguishing keys of positions by plies remaining. */
+    private static final long PLY_KEY = 0x9E3779B97F4A7C15L;
+    /** Multiplier spreading keys over the table. */
+    private static final long INDEX_MULTIPLIER = 0xD6E8FEB86659FD93L;
+
+    /** Keys of the table entries (0 when empty). */
+    private final long[] _keys;
+    /** Packed numbers of the table entries. */
+    private final long[] _entries;
+    /** Shift taking a scrambled key to a table index. */
+    private final int _shift;
+    /** The side to move at the root of the current solve. */
+    private Piece _attacker;
+    /** Plies searched from the root in the current iteration. */
+    private int _rootPlies;
+    /** Positions visited by the current solve, and their limit. */
+    private long _nodes, _nodeLimit;
+    /** True when the current solve must stop. */
+    private volatile boolean _stopped;
+    /** The first move of the win proved, if any. */
+    private Move _winningMove;
+    /** Number of the attacker's moves in the win proved. */
+    private int _movesToWin;
+}
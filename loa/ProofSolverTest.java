@@ -0,0 +1,34 @@
+package loa;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+
+/** Tests of ProofSolver.
+ *  @author Shivang Singh
+ */
+public class ProofSolverTest {
+
+    /** Test the proof-number solver on a win in one move. */
+    @Test
+    public void testWinInOne() {
+        Piece[][] contents = new Piece[8][8];
+        for (Piece[] row : contents) {
+            Arrays.fill(row, EMP);
+        }
+        contents[0][0] = contents[0][1] = contents[1][3] = WP;
+        contents[7][0] = contents[7][2] = contents[5][4] = BP;
+        contents[4][7] = BP;
+        Board b = new Board(contents, WP);
+        ProofSolver solver = new ProofSolver();
+        assertEquals("win in one", ProofSolver.PROVEN, solver.solve(b, 2, 0));
+        assertEquals("moves to win", 1, solver.movesToWin());
+        b.makeMove(solver.winningMove());
+        assertEquals("winning move connects", WP, b.winner());
+        assertEquals("no win from the start", ProofSolver.DISPROVEN,
+                     solver.solve(new Board(), 1, 0));
+    }
+}
@@ -0,0 +1,28 @@
+package loa;
+
+/** An automated move chooser that can run without a Game, as used by
+ *  EngineServer sessions and other headless drivers.
+ *  @author Shivang Singh
+ */
+interface SearchEngine {
+
+    /** Return a move for the side to move in POSITION, which is not
+     *  modified, using my default limits.  Assumes the game is not over. */
+    Move searchForMove(Board position);
+
+    /** Return a move for the side to move in POSITION, which is not
+     *  modified, searching within LIMITS and reporting progress to
+     *  LISTENER, if it is not null.  Assumes the game is not over. */
+    Move searchForMove(Board position, SearchLimits limits,
+                       SearchListener listener);
+
+    /** Turn my search option NAME on iff VALUE.  Throws
+     *  IllegalArgumentException if I have no such option. */
+    default void setOption(String name, boolean value) {
+        throw new IllegalArgumentException("unknown option: " + name);
+    }
+
+    /** Ask the current search, if any, to stop as soon as possible.  May
+     *  be called from any thread. */
+    void stop();
+}
@@ -0,0 +1,176 @@
+package loa;
+
+import static loa.Piece.*;
+
+/** Limits on a single search by a MachinePlayer: a maximum depth, a node
+ *  budget, a fixed time per move, or the players' remaining clocks, from
+ *  which a time budget is derived.  A value of 0 means "no limit".  Also
+ *  gives the number of principal variations wanted (1 by default).
+ *
+ *  Limits also serve as the cancellation token of the searches made
+ *  within them: once cancel is called, those searches stop as soon as
+ *  possible, including any that have not yet started.  Unlike
+ *  SearchEngine.stop, which affects only a search already running, this
+ *  cannot be lost when the search waits for an engine thread.
+ *  @author Shivang Singh
+ */
+class SearchLimits {
+
+    /** Time (ms) held back from a clock to cover communication delays. */
+    static final long CLOCK_MARGIN = 50;
+
+    /** Number of moves assumed to remain when the clocks give no better
+     *  estimate. */
+    static final int DEFAULT_MOVES_TO_GO = 20;
+
+    /** Limits that allow a search to continue until it is stopped. */
+    SearchLimits() {
+    }
+
+    /** Limits equal to LIMITS, but not cancelled. */
+    SearchLimits(SearchLimits limits) {
+        _depth = limits._depth;
+        _nodes = limits._nodes;
+        _moveTime = limits._moveTime;
+        _wtime = limits._wtime;
+        _btime = limits._btime;
+        _winc = limits._winc;
+        _binc = limits._binc;
+        _movesToGo = limits._movesToGo;
+        _multiPv = limits._multiPv;
+    }
+
+    /** Return limits that search to depth DEPTH. */
+    static SearchLimits depth(int depth) {
+        SearchLimits result = new SearchLimits();
+        result._depth = depth;
+        return result;
+    }
+
+    /** Return limits that allow MILLIS milliseconds per move. */
+    static SearchLimits moveTime(long millis) {
+        SearchLimits result = new SearchLimits();
+        result._moveTime = millis;
+        return result;
+    }
+
+    /** Return the limits described by the arguments WORDS[1..] of a "go"
+     *  command: any of "depth D", "nodes N", "movetime MS", "wtime MS",
+     *  "btime MS", "winc MS", "binc MS", "movestogo N", "multipv N" and
+     *  "infinite".
+     *  Throws IllegalArgumentException if WORDS is malformed. */
+    static SearchLimits parse(String[] words) {
+        SearchLimits result = new SearchLimits();
+        for (int i = 1; i < words.length; i += 1) {
+            String key = words[i].toLowerCase();
+            if (key.equals("infinite")) {
+                continue;
+            }
+            if (i + 1 == words.length) {
+                throw new IllegalArgumentException("missing value: " + key);
+            }
+            long value = Long.parseLong(words[i + 1]);
+            i += 1;
+            switch (key) {
+            case "depth":
+                result._depth = (int) value;
+                break;
+            case "nodes":
+                result._nodes = value;
+                break;
+            case "movetime":
+                result._moveTime = value;
+                break;
+            case "wtime":
+                result._wtime = value;
+                break;
+            case "btime":
+                result._btime = value;
+                break;
+            case "winc":
+                result._winc = value;
+                break;
+            case "binc":
+                result._binc = value;
+                break;
+            case "movestogo":
+                result._movesToGo = (int) value;
+                break;
+            case "multipv":
+                if (value < 1) {
+                    throw new IllegalArgumentException("bad multipv");
+                }
+                result._multiPv = (int) value;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown limit: " + key);
+            }
+        }
+        return result;
+    }
+
+    /** Return the maximum depth, or 0 if unlimited. */
+    int maxDepth() {
+        return _depth;
+    }
+
+    /** Return the maximum number of nodes, or 0 if unlimited. */
+    long maxNodes() {
+        return _nodes;
+    }
+
+    /** Return the number of principal variations (best root moves, each
+     *  with its score) wanted. */
+    int multiPv() {
+        return _multiPv;
+    }
+
+    /** Return the number of milliseconds SIDE may spend choosing a move on
+     *  BOARD, or 0 if unlimited.  A fixed move time takes precedence;
+     *  otherwise SIDE's clock is divided over the moves left to play. */
+    long timeBudget(Piece side, Board board) {
+        if (_moveTime > 0) {
+            return _moveTime;
+        }
+        long clock = side == WP ? _wtime : _btime,
+            inc = side == WP ? _winc : _binc;
+        if (clock <= 0) {
+            return 0;
+        }
+        int movesLeft = _movesToGo;
+        if (movesLeft <= 0) {
+            int pliesLeft = board.getmoveLimit() - board.movesMade();
+            movesLeft = Math.min(DEFAULT_MOVES_TO_GO, (pliesLeft + 1) / 2);
+        }
+        long budget = clock / Math.max(1, movesLeft) + inc / 2;
+        return Math.max(1, Math.min(budget, clock - CLOCK_MARGIN));
+    }
+
+    /** Stop the searches within these limits as soon as possible, even
+     *  those not yet started.  May be called from any thread. */
+    void cancel() {
+        _cancelled = true;
+    }
+
+    /** Return true iff cancel has been called. */
+    boolean cancelled() {
+        return _cancelled;
+    }
+
+    /** Depth limit. */
+    private int _depth;
+    /** Node limit. */
+    private long _nodes;
+    /** Fixed time per move (ms). */
+    private long _moveTime;
+    /** Remaining time (ms) for white and black. */
+    private long _wtime, _btime;
+    /** Increment per move (ms) for white and black. */
+    private long _winc, _binc;
+    /** Moves to play before the next time control. */
+    private int _movesToGo;
+    /** Number of principal variations wanted. */
+    private int _multiPv = 1;
+    /** True once searches within these limits must stop. */
+    private volatile boolean _cancelled;
+}
@@ -0,0 +1,70 @@
+package loa;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+
+/** Tests of SearchLimits.
+ *  @author Shivang Singh
+ */
+public class SearchLimitsTest {
+
+    /** Test parsing the limits of a "go" command. */
+    @Test
+    public void testParse() {
+        SearchLimits limits =
+            SearchLimits.parse("go depth 5 nodes 1000 multipv 3".split(" "));
+        assertEquals("depth", 5, limits.maxDepth());
+        assertEquals("nodes", 1000, limits.maxNodes());
+        assertEquals("multipv", 3, limits.multiPv());
+        limits = SearchLimits.parse(new String[] { "go", "infinite" });
+        assertEquals("infinite depth", 0, limits.maxDepth());
+        assertEquals("infinite nodes", 0, limits.maxNodes());
+        assertEquals("infinite time", 0, limits.timeBudget(BP, new Board()));
+        for (String bad : new String[] {
+                "go depth", "go depth x", "go speed 3", "go multipv 0" }) {
+            try {
+                SearchLimits.parse(bad.split(" "));
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    /** Test the time allowed for a move. */
+    @Test
+    public void testTimeBudget() {
+        Board board = new Board();
+        assertEquals("movetime", 700, SearchLimits.parse(
+            "go movetime 700 wtime 9000".split(" ")).timeBudget(WP, board));
+        SearchLimits clocks = SearchLimits.parse(
+            "go wtime 10000 winc 1000 btime 600 movestogo 10".split(" "));
+        assertEquals("white share", 1500, clocks.timeBudget(WP, board));
+        assertEquals("black share", 60, clocks.timeBudget(BP, board));
+        SearchLimits low = SearchLimits.parse("go wtime 100 movestogo 1"
+                                              .split(" "));
+        assertEquals("margin", 100 - SearchLimits.CLOCK_MARGIN,
+                     low.timeBudget(WP, board));
+        SearchLimits late = SearchLimits.parse("go wtime 6000".split(" "));
+        board.setMoveLimit(3);
+        assertEquals("moves to the limit", 2000, late.timeBudget(WP, board));
+    }
+
+    /** Test that limits cancelled before a search starts stop it at once,
+     *  and that copies are not cancelled. */
+    @Test(timeout = 10000)
+    public void testCancelBeforeStart() {
+        SearchLimits limits =
+            SearchLimits.parse(new String[] { "go", "infinite" });
+        limits.cancel();
+        assertFalse("copy", new SearchLimits(limits).cancelled());
+        Board board = new Board();
+        MachinePlayer engine = new MachinePlayer();
+        Move move = engine.searchForMove(board, limits, null);
+        assertTrue("legal move", board.isLegal(move));
+        move = new MctsPlayer().searchForMove(board, limits, null);
+        assertTrue("legal MCTS move", board.isLegal(move));
+    }
+}
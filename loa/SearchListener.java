@@ -0,0 +1,33 @@
+package loa;
+
+import java.util.List;
+
+/** Receives progress reports from a searching MachinePlayer.
+ *  @author Shivang Singh
+ */
+interface SearchListener {
+
+    /** Report that the search to DEPTH has completed with SCORE (positive
+     *  favours white) and principal variation PV, after searching NODES
+     *  positions in MILLIS milliseconds. */
+    void iterationComplete(int depth, int score, long nodes, long millis,
+                           List<Move> pv);
+
+    /** Report that the search to DEPTH has found line number INDEX
+     *  (numbered from 1, best first) of several principal variations
+     *  requested, with exact SCORE (positive favours white) and principal
+     *  variation PV, after searching NODES positions in MILLIS
+     *  milliseconds.  By default, reports the first line as an
+     *  iteration. */
+    default void lineComplete(int depth, int index, int score, long nodes,
+                              long millis, List<Move> pv) {
+        if (index == 1) {
+            iterationComplete(depth, score, nodes, millis, pv);
+        }
+    }
+
+    /** Report that NODES positions have been searched in MILLIS
+     *  milliseconds.  Called periodically during long iterations. */
+    default void progress(long nodes, long millis) {
+    }
+}
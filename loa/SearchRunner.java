@@ -0,0 +1,115 @@
+package loa;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Runs the searches of automated players on a dedicated engine thread,
+ *  so that the thread that asked for a move (and any user interface) is
+ *  free to cancel the search or display its progress.
+ *  @author Shivang Singh
+ */
+class SearchRunner {
+
+    /** What an automated player's getMove returns when its search is
+     *  cancelled: a comment, which the game ignores, so that the command
+     *  that cancelled the search (such as Undo or New) is handled in the
+     *  position the search started from. */
+    static final String CANCELLED = "# search cancelled";
+
+    /** The runner used by MachinePlayer.getMove. */
+    static final SearchRunner DEFAULT = new SearchRunner();
+    /** Runs the helper threads of multi-threaded searches.  Its threads
+     *  are kept between searches rather than started for each. */
+    static final ExecutorService HELPERS =
+        Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "loa-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    /** A runner with its own engine thread. */
+    SearchRunner() {
+        _executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "loa-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Send progress reports from subsequent searches to LISTENER (none
+     *  if null). */
+    void setListener(SearchListener listener) {
+        _listener = listener;
+    }
+
+    /** Return the move chosen by ENGINE for POSITION within LIMITS,
+     *  running the search on my engine thread and waiting for it.  If the
+     *  search is cancelled (or the calling thread interrupted), returns
+     *  null, and the caller must not play a move.  Each search is
+     *  recorded as a
+     *  FlightEvents.MoveRequest and in the move latencies of
+     *  Metrics.REGISTRY. */
+    Move search(SearchEngine engine, Board position, SearchLimits limits) {
+        FlightEvents.MoveRequest event = new FlightEvents.MoveRequest();
+        event.begin();
+        long start = System.currentTimeMillis();
+        Move move = searchOnEngineThread(engine, position, limits);
+        Metrics.REGISTRY.recordMove(System.currentTimeMillis() - start);
+        if (event.shouldCommit()) {
+            event.engine = engine.getClass().getSimpleName();
+            event.move = String.valueOf(move);
+            event.commit();
+        }
+        return move;
+    }
+
+    /** Perform search(ENGINE, POSITION, LIMITS) on my engine thread.  The
+     *  search is made within a copy of LIMITS, which cancel cancels, so
+     *  that a cancellation is not lost if it comes before the search
+     *  starts. */
+    private Move searchOnEngineThread(SearchEngine engine, Board position,
+                                      SearchLimits limits) {
+        SearchListener listener = _listener;
+        SearchLimits search = new SearchLimits(limits);
+        _search = search;
+        Future<Move> result = _executor.submit(
+            () -> engine.searchForMove(position, search, listener));
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    Move move = result.get();
+                    return search.cancelled() ? null : move;
+                } catch (InterruptedException excp) {
+                    interrupted = true;
+                    search.cancel();
+                }
+            }
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            _search = null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Cancel the current search, if any, which then returns null
+     *  promptly.  May be called from any thread. */
+    void cancel() {
+        SearchLimits search = _search;
+        if (search != null) {
+            search.cancel();
+        }
+    }
+
+    /** Executor owning the engine thread. */
+    private final ExecutorService _executor;
+    /** Limits of the current search, or null. */
+    private volatile SearchLimits _search;
+    /** Recipient of progress reports, or null. */
+    private volatile SearchListener _listener;
+}
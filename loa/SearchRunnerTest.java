@@ -0,0 +1,30 @@
+package loa;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of SearchRunner.
+ *  @author Shivang Singh
+ */
+public class SearchRunnerTest {
+
+    /** Test that a cancelled search returns no move, and that the next
+     *  search is unaffected. */
+    @Test(timeout = 20000)
+    public void testCancel() throws InterruptedException {
+        SearchRunner runner = new SearchRunner();
+        Board board = new Board();
+        Move[] result = { Move.mv("b1-b3") };
+        Thread searcher = new Thread(() -> result[0] = runner.search(
+            new MachinePlayer(), board, new SearchLimits()));
+        searcher.start();
+        while (searcher.isAlive()) {
+            runner.cancel();
+            Thread.sleep(10);
+        }
+        assertNull("cancelled", result[0]);
+        Move move = runner.search(new MachinePlayer(), board,
+                                  SearchLimits.depth(1));
+        assertTrue("next search", board.isLegal(move));
+    }
+}
@@ -0,0 +1,226 @@
+package loa;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static loa.Square.ALL_SQUARES;
+import static loa.Square.NUM_SQUARES;
+
+/** A record of what a search explored, for post-mortem analysis.  Events
+ *  of EVENT_SIZE bytes are written into a ring buffer allocated once,
+ *  outside the Java heap, so that recording allocates nothing and the
+ *  most recent events are always available: the start of each search
+ *  (with the key of its position), and the entry to and exit from each
+ *  node (with its ply, depth, window, the move leading to it or the best
+ *  move found, its value and the reason it returned).  A MachinePlayer
+ *  records one search in every few when run with -Dloa.trace=FILE (see
+ *  MachinePlayer), and dumps the ring to FILE when its own evaluation
+ *  drops sharply from one move to the next.
+ *
+ *  A dump holds a header (MAGIC, FORMAT, EVENT_SIZE and the number of
+ *  events) followed by the events, oldest first, all in the byte order
+ *  of the machine that wrote it.  Each event is
+ *      long   node number (for SEARCH, the position key)
+ *      int    alpha, beta (for SEARCH, the moves made and 0)
+ *      int    value (EXIT only)
+ *      short  move: from * 64 + to, or 0 for none
+ *      byte   kind: SEARCH, ENTER or EXIT
+ *      byte   ply
+ *      byte   depth
+ *      byte   reason (EXIT only)
+ *  padded to EVENT_SIZE bytes.  'java loa.SearchTrace FILE' prints a dump
+ *  as text, one event per line, indented by ply.
+ *  @author Shivang Singh
+ */
+final class SearchTrace {
+
+    /** Identifies a trace dump. */
+    static final int MAGIC = 0x4c4f4154;
+    /** Version of the dump format. */
+    static final int FORMAT = 1;
+    /** Size of an event (bytes). */
+    static final int EVENT_SIZE = 32;
+    /** Size of the dump header (bytes). */
+    static final int HEADER_SIZE = 16;
+
+    /** Kinds of event. */
+    static final int SEARCH = 1, ENTER = 2, EXIT = 3;
+    /** Reasons for leaving a node: the game is over, a tablebase hit, a
+     *  leaf evaluated statically, a cutoff by the analysis cache, a
+     *  null-move cutoff, a beta cutoff, all moves searched, quiet moves
+     *  pruned as futile, and the search stopped. */
+    static final int TERMINAL = 1, TABLEBASE = 2, LEAF = 3, CACHE = 4,
+        NULL_MOVE = 5, CUTOFF = 6, ALL_MOVES = 7, FUTILE = 8, STOPPED = 9;
+
+    /** A ring holding the last EVENTS events, rounded up to a power of
+     *  2. */
+    SearchTrace(int events) {
+        int capacity = Integer.highestOneBit(Math.max(1, events - 1)) << 1;
+        _events = ByteBuffer.allocateDirect(capacity * EVENT_SIZE)
+            .order(ByteOrder.nativeOrder());
+        _mask = capacity - 1;
+    }
+
+    /** Record the start of a search of the position with key KEY, after
+     *  MOVESMADE moves. */
+    void search(long key, int movesMade) {
+        put(SEARCH, key, 0, 0, movesMade, 0, 0, null, 0);
+    }
+
+    /** Record entry to the node NODE at PLY with DEPTH remaining, window
+     *  ALPHA .. BETA, reached by MOVE (null if none). */
+    void enter(long node, int ply, int depth, int alpha, int beta,
+               Move move) {
+        put(ENTER, node, ply, depth, alpha, beta, 0, move, 0);
+    }
+
+    /** Record exit from the node NODE at PLY with DEPTH remaining, window
+     *  ALPHA .. BETA, with VALUE and best move MOVE (null if none) for
+     *  REASON. */
+    void exit(long node, int ply, int depth, int alpha, int beta,
+              int value, Move move, int reason) {
+        put(EXIT, node, ply, depth, alpha, beta, value, move, reason);
+    }
+
+    /** Write an event of kind KIND with fields NODE, PLY, DEPTH, ALPHA,
+     *  BETA, VALUE, MOVE and REASON at the head of the ring. */
+    private void put(int kind, long node, int ply, int depth, int alpha,
+                     int beta, int value, Move move, int reason) {
+        int offset = (int) (_next & _mask) * EVENT_SIZE;
+        _next += 1;
+        _events.putLong(offset, node);
+        _events.putInt(offset + 8, alpha);
+        _events.putInt(offset + 12, beta);
+        _events.putInt(offset + 16, value);
+        _events.putShort(offset + 20, move == null ? 0 : (short)
+                         (move.getFrom().index() * NUM_SQUARES
+                          + move.getTo().index()));
+        _events.put(offset + 22, (byte) kind);
+        _events.put(offset + 23, (byte) ply);
+        _events.put(offset + 24, (byte) depth);
+        _events.put(offset + 25, (byte) reason);
+    }
+
+    /** Write the events in the ring, oldest first, to FILE. */
+    void dump(File file) throws IOException {
+        long count = Math.min(_next, _mask + 1L);
+        ByteBuffer header =
+            ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+        header.putInt(MAGIC).putInt(FORMAT).putInt(EVENT_SIZE)
+            .putInt((int) count).flip();
+        try (FileChannel out = new FileOutputStream(file).getChannel()) {
+            write(out, header);
+            int head = (int) (_next & _mask) * EVENT_SIZE;
+            ByteBuffer events = _events.duplicate();
+            if (count > _mask) {
+                events.limit(events.capacity()).position(head);
+                write(out, events);
+            }
+            events.limit(head).position(0);
+            write(out, events);
+        }
+    }
+
+    /** Write all of DATA to OUT. */
+    private static void write(FileChannel out, ByteBuffer data)
+        throws IOException {
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    /** Return the number of events recorded. */
+    long events() {
+        return _next;
+    }
+
+    /** Print the dump in the file ARGS[0] as text. */
+    public static void main(String... args) {
+        if (args.length != 1) {
+            Utils.error(1, "Usage: java loa.SearchTrace FILE%n");
+        }
+        try (RandomAccessFile in = new RandomAccessFile(args[0], "r")) {
+            FileChannel channel = in.getChannel();
+            ByteBuffer data =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt(0) != MAGIC) {
+                data.order(data.order() == ByteOrder.BIG_ENDIAN
+                           ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            }
+            if (data.getInt(0) != MAGIC || data.getInt(4) != FORMAT
+                || data.getInt(8) != EVENT_SIZE) {
+                Utils.error(1, "not a search trace: %s%n", args[0]);
+            }
+            int count = data.getInt(12);
+            if (channel.size() < HEADER_SIZE + (long) count * EVENT_SIZE) {
+                Utils.error(1, "truncated search trace: %s%n", args[0]);
+            }
+            for (int k = 0; k < count; k += 1) {
+                System.out.println(format(data, HEADER_SIZE + k * EVENT_SIZE));
+            }
+        } catch (IOException excp) {
+            Utils.error(1, "cannot read search trace: %s%n",
+                        excp.getMessage());
+        }
+    }
+
+    /** Return the event at OFFSET in DATA as text. */
+    private static String format(ByteBuffer data, int offset) {
+        long node = data.getLong(offset);
+        int alpha = data.getInt(offset + 8), beta = data.getInt(offset + 12),
+            value = data.getInt(offset + 16);
+        int move = data.getShort(offset + 20) & 0xffff;
+        int kind = data.get(offset + 22), ply = data.get(offset + 23),
+            depth = data.get(offset + 24), reason = data.get(offset + 25);
+        String indent = "  ".repeat(Math.max(0, ply));
+        String moveText = move == 0 ? "-"
+            : Move.mv(ALL_SQUARES[move / NUM_SQUARES],
+                      ALL_SQUARES[move % NUM_SQUARES]).toString();
+        switch (kind) {
+        case SEARCH:
+            return String.format("search key %016x after %d moves", node,
+                                 alpha);
+        case ENTER:
+            return String.format("%senter %d ply %d depth %d move %s "
+                                 + "window %s %s", indent, node, ply, depth,
+                                 moveText, valueText(alpha),
+                                 valueText(beta));
+        case EXIT:
+            return String.format("%sexit %d ply %d depth %d value %s "
+                                 + "best %s %s", indent, node, ply, depth,
+                                 valueText(value), moveText,
+                                 REASONS[Math.max(0, Math.min(reason,
+                                     REASONS.length - 1))]);
+        default:
+            return String.format("unknown event %d", kind);
+        }
+    }
+
+    /** Return VALUE as text, writing infinite bounds as "inf". */
+    private static String valueText(int value) {
+        if (value == Integer.MAX_VALUE) {
+            return "inf";
+        } else if (value == -Integer.MAX_VALUE) {
+            return "-inf";
+        }
+        return Integer.toString(value);
+    }
+
+    /** Names of the reasons for leaving a node, by number. */
+    private static final String[] REASONS = {
+        "?", "terminal", "tablebase", "leaf", "cache", "null-move",
+        "cutoff", "all-moves", "futile", "stopped"
+    };
+
+    /** The ring of events. */
+    private final ByteBuffer _events;
+    /** Mask giving a position in the ring from an event number. */
+    private final int _mask;
+    /** Number of events recorded. */
+    private long _next;
+}
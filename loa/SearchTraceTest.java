@@ -0,0 +1,42 @@
+package loa;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Move.mv;
+
+/** Tests of SearchTrace.
+ *  @author Shivang Singh
+ */
+public class SearchTraceTest {
+
+    /** Test that a search trace keeps and dumps its latest events, oldest
+     *  first. */
+    @Test
+    public void testDump() throws IOException {
+        SearchTrace trace = new SearchTrace(16);
+        for (int k = 0; k < 40; k += 1) {
+            trace.enter(k, 1, 2, -5, 5, mv("f3-d5"));
+        }
+        File file = File.createTempFile("loa", ".trace");
+        file.deleteOnExit();
+        trace.dump(file);
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()))
+            .order(ByteOrder.nativeOrder());
+        assertEquals("magic", SearchTrace.MAGIC, data.getInt(0));
+        assertEquals("count", 16, data.getInt(12));
+        assertEquals("size", SearchTrace.HEADER_SIZE
+                     + 16 * SearchTrace.EVENT_SIZE, data.capacity());
+        for (int k = 0; k < 16; k += 1) {
+            assertEquals("node", 24 + k, data.getLong(SearchTrace.HEADER_SIZE
+                                                      + k * SearchTrace
+                                                      .EVENT_SIZE));
+        }
+    }
+}
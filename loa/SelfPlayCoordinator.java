@@ -0,0 +1,487 @@
+package loa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static loa.Square.NUM_SQUARES;
+
+/** Hands out self-play games to SelfPlayWorker processes and collects
+ *  their records, so that game generation is spread over many JVMs.
+ *  Game K (numbered from 0) opens with random moves from a generator
+ *  seeded with SEED + K, after which the engine configured for black
+ *  plays black and the one configured for white plays white, the two
+ *  configurations changing colours in the odd-numbered games.  Workers
+ *  connect on a local socket, each handled by one thread, and ask for one
+ *  game at a time.  A game is leased to a worker until its record
+ *  arrives: if the worker's connection closes, or it sends nothing for
+ *  the lease time, its game goes back to the front of the queue for the
+ *  next worker to ask.  Records are appended to the output file as they
+ *  arrive; a coordinator restarted with the same file and settings
+ *  skips the games already there, so neither workers nor the coordinator
+ *  lose games by crashing.  With --workers=N, the coordinator also starts
+ *  N worker processes on this machine (with the same JVM options and
+ *  class path), restarting those that fail.
+ *
+ *  The output file holds, all big-endian, the header
+ *      int MAGIC, int FORMAT, int games, int random moves, long SEED,
+ *      UTF black configuration, UTF white configuration
+ *  and then a record for each game, in the order they were finished:
+ *      int game number, byte result (1 if white won, -1 if black won,
+ *      0 for a tie), unsigned short number of positions,
+ *  followed by each position reached after the opening whose value was
+ *  not decided:
+ *      long black bitboard, long white bitboard (see Board.pieceBits),
+ *      byte side to move (0 black, 1 white), int value (positive
+ *      favours white).
+ *  @author Shivang Singh
+ */
+final class SelfPlayCoordinator {
+
+    /** Identifies the output file and the protocol. */
+    static final int MAGIC = 0x4c4f4153;
+    /** Version of the file format and protocol. */
+    static final int FORMAT = 1;
+    /** Messages from workers: a request for a job, and a game record. */
+    static final byte REQUEST = 1, RESULT = 2;
+    /** Replies to a request: a job, and no jobs left. */
+    static final byte JOB = 3, DONE = 4;
+    /** Sizes of the header of a record and of each position (bytes). */
+    static final int RECORD_HEADER = 7, POSITION_SIZE = 21;
+    /** Largest number of positions in a record. */
+    static final int MAX_POSITIONS = 1 << 12;
+
+    /** Default port on which to listen. */
+    static final int DEFAULT_PORT = 6062;
+    /** Default number of games. */
+    static final int DEFAULT_GAMES = TrainingData.DEFAULT_GAMES;
+    /** Default configuration of both engines. */
+    static final String DEFAULT_ENGINE =
+        "alphabeta depth " + TrainingData.DEFAULT_DEPTH;
+    /** Default time for which a worker may hold a game (s). */
+    static final int DEFAULT_LEASE = 600;
+    /** Number of times each local worker may be restarted. */
+    static final int RESTARTS_PER_WORKER = 3;
+
+    /** A coordinator writing the records of GAMES games to FILE, each
+     *  opening with RANDOMPLIES random moves from a generator seeded with
+     *  SEED plus its number, and played by the engines configured by
+     *  BLACK and WHITE.  Workers may hold a game for LEASE seconds. */
+    SelfPlayCoordinator(File file, int games, int randomPlies, long seed,
+                        SelfPlayWorker.Config black,
+                        SelfPlayWorker.Config white, int lease) {
+        _file = file;
+        _games = games;
+        _randomPlies = randomPlies;
+        _seed = seed;
+        _black = black;
+        _white = white;
+        _leaseMillis = (int) TimeUnit.SECONDS.toMillis(lease);
+        _done = new BitSet(games);
+    }
+
+    /** Listen on PORT of the loopback interface (any free port if 0),
+     *  starting WORKERS local workers, until all games are recorded. */
+    void serve(int port, int workers) throws IOException {
+        openOutput();
+        for (int k = 0; k < _games; k += 1) {
+            if (!_done.get(k)) {
+                _pending.add(k);
+            }
+        }
+        ExecutorService connections = EngineServer.connectionExecutor();
+        List<Process> processes = new ArrayList<>();
+        try (ServerSocket listener =
+             new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            listening(listener.getLocalPort());
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket client = listener.accept();
+                        connections.execute(() -> serveWorker(client));
+                    }
+                } catch (IOException excp) {
+                    Utils.debug(1, "listener closed: %s", excp.getMessage());
+                }
+            }, "loa-coordinator");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            for (int k = 0; k < workers; k += 1) {
+                processes.add(launchWorker(listener.getLocalPort()));
+            }
+            int restarts = RESTARTS_PER_WORKER * workers;
+            while (!awaitDone(TimeUnit.SECONDS.toMillis(1))) {
+                for (int k = 0; k < processes.size(); k += 1) {
+                    Process worker = processes.get(k);
+                    if (!worker.isAlive() && worker.exitValue() != 0
+                        && restarts > 0) {
+                        restarts -= 1;
+                        System.err.printf("worker %d failed; restarting%n",
+                                          worker.pid());
+                        processes.set(k,
+                                      launchWorker(listener.getLocalPort()));
+                    }
+                }
+            }
+        } finally {
+            connections.shutdown();
+            try {
+                connections.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            connections.shutdownNow();
+            for (Process worker : processes) {
+                worker.destroy();
+            }
+            _output.close();
+        }
+    }
+
+    /** Return the port on which serve listens, waiting until it does. */
+    synchronized int port() throws InterruptedException {
+        while (_port == 0) {
+            wait();
+        }
+        return _port;
+    }
+
+    /** Note that serve is listening on PORT. */
+    private synchronized void listening(int port) {
+        _port = port;
+        notifyAll();
+    }
+
+    /** Return the number of games recorded by this run. */
+    synchronized int recorded() {
+        return _recorded;
+    }
+
+    /** Return the number of positions recorded by this run. */
+    synchronized long positions() {
+        return _positions;
+    }
+
+    /** Wait up to MILLIS milliseconds for all games to be recorded, and
+     *  return true iff they are. */
+    private synchronized boolean awaitDone(long millis) {
+        if (_done.cardinality() < _games) {
+            try {
+                wait(millis);
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        }
+        return _done.cardinality() == _games;
+    }
+
+    /** Serve the worker on CLIENT until it has no more to do or its
+     *  connection fails, putting back any game it leaves unfinished. */
+    private void serveWorker(Socket client) {
+        List<Integer> leased = new ArrayList<>();
+        try (Socket socket = client) {
+            socket.setSoTimeout(_leaseMillis);
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("not a self-play worker");
+            }
+            while (true) {
+                int message = in.readByte();
+                if (message == RESULT) {
+                    int game = record(readRecord(in));
+                    leased.remove(Integer.valueOf(game));
+                } else if (message == REQUEST) {
+                    Integer game = take();
+                    if (game == null) {
+                        out.writeByte(DONE);
+                        out.flush();
+                        return;
+                    }
+                    leased.add(game);
+                    writeJob(out, game);
+                    out.flush();
+                } else {
+                    throw new IOException("unexpected message " + message);
+                }
+            }
+        } catch (IOException excp) {
+            Utils.debug(1, "worker connection: %s", excp.getMessage());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } finally {
+            release(leased);
+        }
+    }
+
+    /** Return the next game not yet recorded, waiting while all such games
+     *  are leased, or null if all games are recorded. */
+    private synchronized Integer take() throws InterruptedException {
+        while (true) {
+            Integer game;
+            while ((game = _pending.poll()) != null) {
+                if (!_done.get(game)) {
+                    return game;
+                }
+            }
+            if (_done.cardinality() == _games) {
+                return null;
+            }
+            wait();
+        }
+    }
+
+    /** Put the unrecorded GAMES back at the front of the queue. */
+    private synchronized void release(List<Integer> games) {
+        for (int game : games) {
+            if (!_done.get(game)) {
+                _pending.addFirst(game);
+            }
+        }
+        notifyAll();
+    }
+
+    /** Append RECORD to the output unless its game is already recorded,
+     *  and return the number of its game. */
+    private synchronized int record(byte[] record) throws IOException {
+        int game = ByteBuffer.wrap(record).getInt();
+        if (!_done.get(game)) {
+            _output.write(record);
+            _done.set(game);
+            _recorded += 1;
+            _positions += (record.length - RECORD_HEADER) / POSITION_SIZE;
+            notifyAll();
+        }
+        return game;
+    }
+
+    /** Read and check a game record from IN. */
+    private byte[] readRecord(DataInputStream in) throws IOException {
+        int game = in.readInt(), result = in.readByte(),
+            count = in.readUnsignedShort();
+        if (game < 0 || game >= _games || Math.abs(result) > 1
+            || count > MAX_POSITIONS) {
+            throw new IOException("bad game record");
+        }
+        byte[] record = new byte[RECORD_HEADER + count * POSITION_SIZE];
+        ByteBuffer.wrap(record).putInt(game).put((byte) result)
+            .putShort((short) count);
+        in.readFully(record, RECORD_HEADER, count * POSITION_SIZE);
+        return record;
+    }
+
+    /** Write the job of playing game GAME to OUT. */
+    private void writeJob(DataOutputStream out, int game)
+        throws IOException {
+        boolean swapped = game % 2 == 1;
+        out.writeByte(JOB);
+        out.writeInt(game);
+        out.writeLong(_seed + game);
+        out.writeUTF((swapped ? _white : _black).toString());
+        out.writeUTF((swapped ? _black : _white).toString());
+        List<Move> opening = opening(game);
+        out.writeShort(opening.size());
+        for (Move move : opening) {
+            out.writeShort(move.getFrom().index() * NUM_SQUARES
+                           + move.getTo().index());
+        }
+    }
+
+    /** Return the random opening moves of game GAME. */
+    private List<Move> opening(int game) {
+        Random random = new Random(_seed + game);
+        Board board = new Board();
+        List<Move> result = new ArrayList<>();
+        for (int k = 0; k < _randomPlies && !board.gameOver(); k += 1) {
+            List<Move> moves = board.legalMoves();
+            Move move = moves.get(random.nextInt(moves.size()));
+            board.makeMove(move);
+            result.add(move);
+        }
+        return result;
+    }
+
+    /** Return the header of my output file. */
+    private byte[] header() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT);
+        header.writeInt(_games);
+        header.writeInt(_randomPlies);
+        header.writeLong(_seed);
+        header.writeUTF(_black.toString());
+        header.writeUTF(_white.toString());
+        return bytes.toByteArray();
+    }
+
+    /** Open my output file for appending, first noting the games it
+     *  already holds and discarding any incomplete record at its end, or
+     *  start it if it is empty. */
+    private void openOutput() throws IOException {
+        byte[] header = header();
+        if (_file.length() == 0) {
+            _output = new FileOutputStream(_file);
+            _output.write(header);
+            return;
+        }
+        try (RandomAccessFile old = new RandomAccessFile(_file, "rw")) {
+            byte[] oldHeader = new byte[header.length];
+            if (old.length() < header.length) {
+                throw new IOException(_file + " is not a self-play file");
+            }
+            old.readFully(oldHeader);
+            if (!Arrays.equals(header, oldHeader)) {
+                throw new IOException(_file + " holds games with other "
+                                      + "settings");
+            }
+            long end = header.length, length = old.length();
+            while (end + RECORD_HEADER <= length) {
+                old.seek(end);
+                int game = old.readInt();
+                old.readByte();
+                long next = end + RECORD_HEADER
+                    + (long) old.readUnsignedShort() * POSITION_SIZE;
+                if (next > length || game < 0 || game >= _games) {
+                    break;
+                }
+                _done.set(game);
+                end = next;
+            }
+            old.setLength(end);
+        }
+        _output = new FileOutputStream(_file, true);
+    }
+
+    /** Start a worker process on this machine serving PORT. */
+    private static Process launchWorker(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(ManagementFactory.getRuntimeMXBean()
+                       .getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SelfPlayWorker.class.getName());
+        command.add(Integer.toString(port));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /** Coordinate self-play, writing to the file named by the first of
+     *  ARGS that is not an option, with the options --games=N,
+     *  --random=K (random opening moves), --seed=S, --black=CONFIG and
+     *  --white=CONFIG (see SelfPlayWorker.Config), --port=P, --lease=SEC
+     *  (time a worker may hold a game) and --workers=W (local worker
+     *  processes to start; default 0). */
+    public static void main(String... args) {
+        int games = DEFAULT_GAMES, randomPlies =
+            TrainingData.DEFAULT_RANDOM_PLIES, port = DEFAULT_PORT,
+            lease = DEFAULT_LEASE, workers = 0;
+        long seed = 0;
+        String black = DEFAULT_ENGINE, white = DEFAULT_ENGINE, file = null;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--games=")) {
+                    games = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--random=")) {
+                    randomPlies = Integer.parseInt(arg.substring(9));
+                } else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(arg.substring(7));
+                } else if (arg.startsWith("--black=")) {
+                    black = arg.substring(8);
+                } else if (arg.startsWith("--white=")) {
+                    white = arg.substring(8);
+                } else if (arg.startsWith("--port=")) {
+                    port = Integer.parseInt(arg.substring(7));
+                } else if (arg.startsWith("--lease=")) {
+                    lease = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--workers=")) {
+                    workers = Integer.parseInt(arg.substring(10));
+                } else if (arg.startsWith("--") || file != null) {
+                    throw new NumberFormatException();
+                } else {
+                    file = arg;
+                }
+            }
+            if (file == null) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException excp) {
+            Utils.error(1, "Usage: java loa.SelfPlayCoordinator [--games=N] "
+                        + "[--random=K] [--seed=S] [--black=CONFIG] "
+                        + "[--white=CONFIG] [--port=P] [--lease=SEC] "
+                        + "[--workers=W] FILE%n");
+        }
+        if (games < 0 || randomPlies < 0 || lease < 1 || workers < 0) {
+            Utils.error(1, "lease must be positive, and games, random moves "
+                        + "and workers not negative%n");
+        }
+        SelfPlayCoordinator coordinator = null;
+        try {
+            coordinator = new SelfPlayCoordinator(
+                new File(file), games, randomPlies, seed,
+                SelfPlayWorker.Config.parse(black),
+                SelfPlayWorker.Config.parse(white), lease);
+        } catch (IllegalArgumentException excp) {
+            Utils.error(1, "%s%n", excp.getMessage());
+        }
+        long start = System.currentTimeMillis();
+        try {
+            coordinator.serve(port, workers);
+        } catch (IOException excp) {
+            Utils.error(1, "self-play failed: %s%n", excp.getMessage());
+        }
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        System.err.printf("%d games, %d positions in %d ms%n",
+                          coordinator.recorded(), coordinator.positions(),
+                          millis);
+    }
+
+    /** Output file. */
+    private final File _file;
+    /** Number of games. */
+    private final int _games;
+    /** Number of random moves opening each game. */
+    private final int _randomPlies;
+    /** Seed of the random moves of game 0. */
+    private final long _seed;
+    /** Configurations of the engines playing black and white in the
+     *  even-numbered games. */
+    private final SelfPlayWorker.Config _black, _white;
+    /** Time a worker may hold a game (ms). */
+    private final int _leaseMillis;
+    /** Games recorded in the output file. */
+    private final BitSet _done;
+    /** Games waiting for a worker. */
+    private final Deque<Integer> _pending = new ArrayDeque<>();
+    /** Port on which serve listens (0 until it does). */
+    private int _port;
+    /** Appends records to the output file. */
+    private FileOutputStream _output;
+    /** Games recorded by this run. */
+    private int _recorded;
+    /** Positions recorded by this run. */
+    private long _positions;
+}
@@ -0,0 +1,206 @@
+package loa;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.SelfPlayCoordinator.*;
+
+/** Tests of SelfPlayCoordinator with SelfPlayWorkers in this process.
+ *  @author Shivang Singh
+ */
+public class SelfPlayCoordinatorTest {
+
+    /** Number of games played in each test. */
+    private static final int GAMES = 3;
+
+    /** Test that a game whose worker disconnects without its record goes
+     *  to another worker, and that a worker whose connection fails after
+     *  it sends a record sends it again rather than replaying the game. */
+    @Test(timeout = 120000)
+    public void testDroppedConnections() throws Exception {
+        File file = File.createTempFile("selfplay", ".dat");
+        file.deleteOnExit();
+        SelfPlayCoordinator coordinator = coordinator(file);
+        Thread server = serve(coordinator);
+        int port = coordinator.port();
+        try (Socket client = new Socket(LOOPBACK, port)) {
+            DataOutputStream out =
+                new DataOutputStream(client.getOutputStream());
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeByte(REQUEST);
+            out.flush();
+            DataInputStream in =
+                new DataInputStream(client.getInputStream());
+            assertEquals("job", JOB, in.readByte());
+            assertEquals("first game", 0, in.readInt());
+        }
+        int played;
+        try (ServerSocket proxy = proxy(port)) {
+            played = new SelfPlayWorker(LOOPBACK.getHostAddress(),
+                                        proxy.getLocalPort()).run();
+        }
+        server.join();
+        assertEquals("games played once each", GAMES, played);
+        assertEquals("games recorded", GAMES, coordinator.recorded());
+        assertEquals("records", GAMES, games(records(file)).size());
+    }
+
+    /** Test that a restarted coordinator keeps the complete records in its
+     *  file, discards a partial one at its end, and plays only the games
+     *  missing. */
+    @Test(timeout = 120000)
+    public void testResume() throws Exception {
+        File file = File.createTempFile("selfplay", ".dat");
+        file.deleteOnExit();
+        SelfPlayCoordinator first = coordinator(file);
+        Thread server = serve(first);
+        new SelfPlayWorker(LOOPBACK.getHostAddress(), first.port()).run();
+        server.join();
+        List<long[]> records = records(file);
+        long[] last = records.get(GAMES - 1);
+        try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+            data.setLength(last[1] + RECORD_HEADER + 1);
+        }
+        SelfPlayCoordinator second = coordinator(file);
+        server = serve(second);
+        int played = new SelfPlayWorker(LOOPBACK.getHostAddress(),
+                                        second.port()).run();
+        server.join();
+        assertEquals("games played", 1, played);
+        assertEquals("games recorded", 1, second.recorded());
+        records = records(file);
+        assertEquals("records", GAMES, games(records).size());
+        assertEquals("replayed game", last[0], records.get(GAMES - 1)[0]);
+    }
+
+    /** Return a coordinator of GAMES quick games writing to FILE. */
+    private static SelfPlayCoordinator coordinator(File file) {
+        SelfPlayWorker.Config config =
+            SelfPlayWorker.Config.parse("alphabeta depth 1");
+        return new SelfPlayCoordinator(file, GAMES, 4, 1, config, config,
+                                       60);
+    }
+
+    /** Start COORDINATOR serving on a free port on a thread of its own,
+     *  and return the thread. */
+    private static Thread serve(SelfPlayCoordinator coordinator) {
+        Thread result = new Thread(() -> {
+            try {
+                coordinator.serve(0, 0);
+            } catch (IOException excp) {
+                throw new IllegalStateException(excp);
+            }
+        });
+        result.start();
+        return result;
+    }
+
+    /** Return a listener on a free port whose connections are forwarded
+     *  to PORT.  The first is cut off, in both directions, when the
+     *  client sends anything after its first request. */
+    private static ServerSocket proxy(int port) throws IOException {
+        ServerSocket listener = new ServerSocket(0, 0, LOOPBACK);
+        Thread acceptor = new Thread(() -> {
+            try {
+                for (int k = 0; true; k += 1) {
+                    Socket client = listener.accept(),
+                        server = new Socket(LOOPBACK, port);
+                    forward(server, client, -1);
+                    forward(client, server, k == 0 ? 9 : -1);
+                }
+            } catch (IOException excp) {
+                /* The test is over. */
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return listener;
+    }
+
+    /** Copy what arrives on FROM to TO on a thread of its own, closing
+     *  both when either closes.  If LIMIT >= 0, close both instead of
+     *  copying anything after the first LIMIT bytes. */
+    private static void forward(Socket from, Socket to, int limit) {
+        Thread pump = new Thread(() -> {
+            try (Socket in = from; Socket out = to) {
+                InputStream input = in.getInputStream();
+                OutputStream output = out.getOutputStream();
+                byte[] buffer = new byte[1 << 12];
+                int left = limit;
+                for (int n = input.read(buffer); n >= 0;
+                     n = input.read(buffer)) {
+                    if (left >= 0 && n > left) {
+                        output.write(buffer, 0, left);
+                        return;
+                    }
+                    output.write(buffer, 0, n);
+                    left = left >= 0 ? left - n : left;
+                }
+            } catch (IOException excp) {
+                /* The other pump closed the sockets. */
+            }
+        });
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    /** Return, for each record in the self-play FILE in order, its game
+     *  number and the offset at which it starts, checking that the
+     *  records exactly fill the file after its header. */
+    private static List<long[]> records(File file) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        assertEquals("magic", MAGIC, data.getInt());
+        assertEquals("format", FORMAT, data.getInt());
+        assertEquals("games", GAMES, data.getInt());
+        data.getInt();
+        data.getLong();
+        for (int k = 0; k < 2; k += 1) {
+            int length = data.getShort();
+            data.position(data.position() + length);
+        }
+        List<long[]> result = new ArrayList<>();
+        while (data.hasRemaining()) {
+            int start = data.position(), game = data.getInt();
+            data.get();
+            int count = data.getShort() & 0xffff;
+            assertTrue("complete record",
+                       count * POSITION_SIZE <= data.remaining());
+            data.position(data.position() + count * POSITION_SIZE);
+            result.add(new long[] { game, start });
+        }
+        return result;
+    }
+
+    /** Return the game numbers of RECORDS, checking that each appears
+     *  once. */
+    private static Set<Long> games(List<long[]> records) {
+        Set<Long> result = new HashSet<>();
+        for (long[] record : records) {
+            assertTrue("game " + record[0] + " once", result.add(record[0]));
+            assertTrue("game number", record[0] >= 0 && record[0] < GAMES);
+        }
+        return result;
+    }
+
+    /** The loopback address, on which the coordinator listens. */
+    private static final InetAddress LOOPBACK =
+        InetAddress.getLoopbackAddress();
+}
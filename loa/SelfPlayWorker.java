@@ -0,0 +1,276 @@
+package loa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static loa.Piece.*;
+import static loa.SelfPlayCoordinator.*;
+import static loa.Square.ALL_SQUARES;
+import static loa.Square.NUM_SQUARES;
+
+/** A process that plays games for a SelfPlayCoordinator.  It connects to
+ *  the coordinator, asks for a job (a game number, a seed, the
+ *  configurations of the engines playing black and white, and the opening
+ *  moves), plays the game on a Board of its own with no view, sends back
+ *  its record (see SelfPlayCoordinator) and asks for the next job, until
+ *  the coordinator has none left.
+ *
+ *  If the connection fails, the worker reconnects, retrying every
+ *  RETRY_MILLIS for up to GIVE_UP_MILLIS, and first sends the record of
+ *  any game that the coordinator had not acknowledged, so a coordinator
+ *  that restarts loses nothing.  A worker that dies loses only the game
+ *  it was playing, which the coordinator hands to another worker.
+ *  @author Shivang Singh
+ */
+final class SelfPlayWorker {
+
+    /** Interval between attempts to reach the coordinator (ms). */
+    static final long RETRY_MILLIS = 500;
+    /** Time after which a worker that cannot reach the coordinator gives
+     *  up (ms). */
+    static final long GIVE_UP_MILLIS = 60_000;
+
+    /** A worker serving the coordinator on PORT of HOST. */
+    SelfPlayWorker(String host, int port) {
+        _host = host;
+        _port = port;
+    }
+
+    /** Play jobs until the coordinator has none left or cannot be reached.
+     *  Returns the number of games played. */
+    int run() {
+        long failedSince = 0;
+        while (true) {
+            try (Socket socket = new Socket(_host, _port)) {
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                while (true) {
+                    if (_unsent != null) {
+                        out.writeByte(RESULT);
+                        out.write(_unsent);
+                    }
+                    out.writeByte(REQUEST);
+                    out.flush();
+                    int reply = in.readByte();
+                    _unsent = null;
+                    failedSince = 0;
+                    if (reply == DONE) {
+                        return _played;
+                    } else if (reply != JOB) {
+                        throw new IOException("unexpected message " + reply);
+                    }
+                    _unsent = play(in);
+                    _played += 1;
+                }
+            } catch (IOException excp) {
+                Utils.debug(1, "coordinator connection: %s",
+                            excp.getMessage());
+            }
+            long now = System.currentTimeMillis();
+            if (failedSince == 0) {
+                failedSince = now;
+            } else if (now - failedSince > GIVE_UP_MILLIS) {
+                System.err.printf("worker: cannot reach %s:%d%n",
+                                  _host, _port);
+                return _played;
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException excp) {
+                return _played;
+            }
+        }
+    }
+
+    /** Read a job from IN, play it, and return its record. */
+    private byte[] play(DataInputStream in) throws IOException {
+        int job = in.readInt();
+        long seed = in.readLong();
+        Config black, white;
+        try {
+            black = Config.parse(in.readUTF());
+            white = Config.parse(in.readUTF());
+        } catch (IllegalArgumentException excp) {
+            throw new IOException(excp.getMessage());
+        }
+        Board board = new Board();
+        for (int k = in.readUnsignedShort(); k > 0; k -= 1) {
+            int code = in.readUnsignedShort();
+            Move move = code >= NUM_SQUARES * NUM_SQUARES ? null
+                : Move.mv(ALL_SQUARES[code / NUM_SQUARES],
+                          ALL_SQUARES[code % NUM_SQUARES]);
+            if (move == null || !board.isLegal(move)) {
+                throw new IOException("illegal opening move");
+            }
+            board.makeMove(move);
+        }
+        SearchEngine blackEngine = black.create(seed),
+            whiteEngine = white.create(seed);
+        ByteArrayOutputStream positions = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(positions);
+        int count = 0;
+        while (!board.gameOver()) {
+            Config config = board.turn() == BP ? black : white;
+            SearchEngine engine = board.turn() == BP ? blackEngine
+                : whiteEngine;
+            int[] value = new int[1];
+            Move best = engine.searchForMove(board, config.limits(),
+                                             (depth, score, nodes, millis,
+                                              pv) -> value[0] = score);
+            if (Math.abs(value[0]) < MachinePlayer.DECIDED_VALUE
+                && count < MAX_POSITIONS) {
+                data.writeLong(board.pieceBits(BP));
+                data.writeLong(board.pieceBits(WP));
+                data.writeByte(board.turn() == WP ? 1 : 0);
+                data.writeInt(value[0]);
+                count += 1;
+            }
+            board.makeMove(best);
+        }
+        Piece winner = board.winner();
+        ByteArrayOutputStream record =
+            new ByteArrayOutputStream(RECORD_HEADER + positions.size());
+        DataOutputStream header = new DataOutputStream(record);
+        header.writeInt(job);
+        header.writeByte(winner == WP ? 1 : winner == BP ? -1 : 0);
+        header.writeShort(count);
+        positions.writeTo(record);
+        return record.toByteArray();
+    }
+
+    /** The configuration of an engine, written
+     *      NAME [KEY VALUE]...
+     *  where NAME is "alphabeta" or "mcts", and each KEY is "threads"
+     *  (the MctsPlayer's search threads), a search option of the engine
+     *  (with VALUE "on" or "off"), or a limit of the "go" command (see
+     *  SearchLimits.parse).  At least one of the limits "depth", "nodes"
+     *  and "movetime" must be given, as in "alphabeta depth 3 nullmove
+     *  off" or "mcts nodes 5000 threads 2". */
+    static final class Config {
+
+        /** Return the configuration described by TEXT.  Throws
+         *  IllegalArgumentException if it is malformed. */
+        static Config parse(String text) {
+            String[] words = text.trim().split("\\s+");
+            if (words.length % 2 != 1
+                || !words[0].matches("alphabeta|mcts")) {
+                throw new IllegalArgumentException("bad engine: " + text);
+            }
+            Config result = new Config(text.trim(), words[0]);
+            List<String> limits = new ArrayList<>();
+            limits.add("go");
+            boolean bounded = false;
+            try {
+                for (int i = 1; i < words.length; i += 2) {
+                    String key = words[i].toLowerCase(), value = words[i + 1];
+                    if (value.matches("(?i)on|off")) {
+                        result._options.put(key, value.equalsIgnoreCase("on"));
+                    } else if (key.equals("threads")) {
+                        result._threads = Integer.parseInt(value);
+                    } else {
+                        bounded |= key.matches("depth|nodes|movetime");
+                        limits.add(key);
+                        limits.add(value);
+                    }
+                }
+                result._limits =
+                    SearchLimits.parse(limits.toArray(new String[0]));
+            } catch (NumberFormatException excp) {
+                throw new IllegalArgumentException("bad engine: " + text);
+            }
+            if (!bounded || result._threads < 1) {
+                throw new IllegalArgumentException("engine needs a depth, "
+                                                   + "node or time limit: "
+                                                   + text);
+            }
+            result.create(0);
+            return result;
+        }
+
+        /** A configuration described by TEXT of the engine NAME. */
+        private Config(String text, String name) {
+            _text = text;
+            _name = name;
+        }
+
+        /** Return a new engine so configured whose random choices, if any,
+         *  are seeded from SEED.  Throws IllegalArgumentException if the
+         *  engine has no such option. */
+        SearchEngine create(long seed) {
+            SearchEngine engine = _name.equals("mcts")
+                ? new MctsPlayer(null, null, _threads, seed)
+                : new MachinePlayer();
+            for (Map.Entry<String, Boolean> option : _options.entrySet()) {
+                engine.setOption(option.getKey(), option.getValue());
+            }
+            return engine;
+        }
+
+        /** Return the limits of each search. */
+        SearchLimits limits() {
+            return _limits;
+        }
+
+        @Override
+        public String toString() {
+            return _text;
+        }
+
+        /** My description. */
+        private final String _text;
+        /** Name of the engine. */
+        private final String _name;
+        /** Number of search threads (of an MctsPlayer). */
+        private int _threads = 1;
+        /** Options to set, in order. */
+        private final Map<String, Boolean> _options = new LinkedHashMap<>();
+        /** Limits of each search. */
+        private SearchLimits _limits;
+    }
+
+    /** Serve the coordinator on [HOST:]PORT given by ARGS[0] (the
+     *  loopback interface by default). */
+    public static void main(String... args) {
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        int port = 0;
+        try {
+            if (args.length != 1) {
+                throw new NumberFormatException();
+            }
+            String address = args[0];
+            int colon = address.lastIndexOf(':');
+            if (colon >= 0) {
+                host = address.substring(0, colon);
+                address = address.substring(colon + 1);
+            }
+            port = Integer.parseInt(address);
+        } catch (NumberFormatException excp) {
+            Utils.error(1, "Usage: java loa.SelfPlayWorker [HOST:]PORT%n");
+        }
+        new SelfPlayWorker(host, port).run();
+    }
+
+    /** Address of the coordinator. */
+    private final String _host;
+    /** Port of the coordinator. */
+    private final int _port;
+    /** Record of the last game played, until the coordinator has received
+     *  it, or null. */
+    private byte[] _unsent;
+    /** Number of games played. */
+    private int _played;
+}
@@ -0,0 +1,32 @@
+package loa;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of SelfPlayWorker.
+ *  @author Shivang Singh
+ */
+public class SelfPlayWorkerTest {
+
+    /** Test the parsing of self-play engine configurations. */
+    @Test
+    public void testParseConfig() {
+        SelfPlayWorker.Config config =
+            SelfPlayWorker.Config.parse("alphabeta depth 2 nullmove off");
+        assertEquals("depth", 2, config.limits().maxDepth());
+        assertTrue("engine",
+                   config.create(0) instanceof MachinePlayer);
+        assertEquals("nodes", 500, SelfPlayWorker.Config
+                     .parse("mcts nodes 500 threads 2").limits().maxNodes());
+        for (String bad : new String[] {
+                "alphabeta", "minimax depth 2", "alphabeta depth",
+                "alphabeta depth 2 nosuchoption on", "mcts threads 2" }) {
+            try {
+                SelfPlayWorker.Config.parse(bad);
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+    }
+}
@@ -48,16 +48,6 @@ final class Square {
                         Math.abs(_col - other._col));
     }
 
-    /** finds distance between square
-     * and coordinates.
-     * @param x is the x-coordinate.
-     * @param y is the y-coordinate.
-     * @return
-     */
-    double distance(double x, double y) {
-        return Math.max(Math.abs(_row - x), Math.abs(_col - y));
-    }
-
     /** Return true iff THIS - TO is a valid move. */
     boolean isValidMove(Square to) {
         return this != to
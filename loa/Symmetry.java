@@ -0,0 +1,223 @@
+package loa;
+
+import static loa.Piece.*;
+import static loa.Square.*;
+
+/** The eight symmetries of the board (rotations and reflections), under
+ *  which the rules of LOA are invariant, and position keys that are
+ *  canonical under them.  Exchanging the colours of all pieces together
+ *  with the side to move also preserves the game (with the sides' roles
+ *  exchanged), so canonical keys may optionally identify such positions
+ *  as well.
+ *
+ *  Transform T (0 <= T < COUNT) maps (col, row) by first exchanging col
+ *  and row if T & TRANSPOSE, then reflecting col if T & MIRROR and row if
+ *  T & FLIP.  Transform 0 is the identity.
+ *  @author Shivang Singh
+ */
+final class Symmetry {
+
+    /** Number of board symmetries. */
+    static final int COUNT = 8;
+    /** Transform bits: reflect columns, reflect rows, exchange column and
+     *  row. */
+    static final int MIRROR = 1, FLIP = 2, TRANSPOSE = 4;
+
+    /** The result of canonicalising a position. */
+    static final class Canonical {
+
+        /** The canonical KEY, reached by TRANSFORM, with the colours
+         *  exchanged iff SWAPPED. */
+        Canonical(long key, int transform, boolean swapped) {
+            _key = key;
+            _transform = transform;
+            _swapped = swapped;
+        }
+
+        /** Return the key of the canonical form. */
+        long key() {
+            return _key;
+        }
+
+        /** Return the transform taking the original position to the
+         *  canonical one. */
+        int transform() {
+            return _transform;
+        }
+
+        /** Return true iff the colours were exchanged, so that the
+         *  canonical position's white plays the original's black.  Scores
+         *  from white's point of view then change sign. */
+        boolean swapped() {
+            return _swapped;
+        }
+
+        /** Return the move in the original position corresponding to MV
+         *  in the canonical one. */
+        Move toOriginal(Move mv) {
+            return Symmetry.transform(mv, inverse(_transform));
+        }
+
+        /** Return the move in the canonical position corresponding to MV
+         *  in the original one. */
+        Move toCanonical(Move mv) {
+            return Symmetry.transform(mv, _transform);
+        }
+
+        /** Canonical key. */
+        private final long _key;
+        /** Transform to the canonical position. */
+        private final int _transform;
+        /** True iff colours were exchanged. */
+        private final boolean _swapped;
+    }
+
+    /** Return the index of the image of the square with index SQ under
+     *  transform T. */
+    static int transform(int sq, int t) {
+        return SQUARE_MAP[t][sq];
+    }
+
+    /** Return the image of square S under transform T. */
+    static Square transform(Square s, int t) {
+        return ALL_SQUARES[SQUARE_MAP[t][s.index()]];
+    }
+
+    /** Return the image of MV under transform T (preserving
+     *  isCapture()). */
+    static Move transform(Move mv, int t) {
+        return Move.mv(transform(mv.getFrom(), t), transform(mv.getTo(), t),
+                       mv.isCapture());
+    }
+
+    /** Return the inverse of transform T. */
+    static int inverse(int t) {
+        return INVERSE[t];
+    }
+
+    /** Return the image of the set of squares BITS under transform T. */
+    static long transform(long bits, int t) {
+        if ((t & TRANSPOSE) != 0) {
+            bits = transpose(bits);
+        }
+        if ((t & MIRROR) != 0) {
+            bits = mirror(bits);
+        }
+        if ((t & FLIP) != 0) {
+            bits = Long.reverseBytes(bits);
+        }
+        return bits;
+    }
+
+    /** Return a 64-bit key for the position with BLACK and WHITE pieces
+     *  and TURN to move.  Equal positions have equal keys. */
+    static long key(long black, long white, Piece turn) {
+        long h = mix(black) * KEY_MULTIPLIER + mix(white ^ WHITE_SALT);
+        return turn == WP ? ~mix(h) : mix(h);
+    }
+
+    /** Return the key of the position on BOARD. */
+    static long key(Board board) {
+        return key(board.pieceBits(BP), board.pieceBits(WP), board.turn());
+    }
+
+    /** Return the canonical form of the position on BOARD: the least key
+     *  of its images under all transforms and, iff COLOURSWAP, of the
+     *  images of the position with colours and side to move exchanged. */
+    static Canonical canonical(Board board, boolean colourSwap) {
+        long black = board.pieceBits(BP), white = board.pieceBits(WP);
+        Piece turn = board.turn();
+        long bestKey = 0;
+        int bestTransform = -1;
+        boolean bestSwapped = false;
+        for (int swap = 0; swap < (colourSwap ? 2 : 1); swap += 1) {
+            for (int t = 0; t < COUNT; t += 1) {
+                long b = transform(swap == 0 ? black : white, t),
+                    w = transform(swap == 0 ? white : black, t);
+                long k = key(b, w, swap == 0 ? turn : turn.opposite());
+                if (bestTransform < 0
+                    || Long.compareUnsigned(k, bestKey) < 0) {
+                    bestKey = k;
+                    bestTransform = t;
+                    bestSwapped = swap == 1;
+                }
+            }
+        }
+        return new Canonical(bestKey, bestTransform, bestSwapped);
+    }
+
+    /** Return BITS with each row reversed (column c becomes 7 - c). */
+    private static long mirror(long bits) {
+        bits = (bits >>> 1 & 0x5555555555555555L)
+            | (bits & 0x5555555555555555L) << 1;
+        bits = (bits >>> 2 & 0x3333333333333333L)
+            | (bits & 0x3333333333333333L) << 2;
+        return (bits >>> 4 & 0x0f0f0f0f0f0f0f0fL)
+            | (bits & 0x0f0f0f0f0f0f0f0fL) << 4;
+    }
+
+    /** Return BITS reflected in the a1-h8 diagonal (column and row
+     *  exchanged). */
+    private static long transpose(long bits) {
+        long t = 0x0f0f0f0f00000000L & (bits ^ bits << 28);
+        bits ^= t ^ t >>> 28;
+        t = 0x3333000033330000L & (bits ^ bits << 14);
+        bits ^= t ^ t >>> 14;
+        t = 0x5500550055005500L & (bits ^ bits << 7);
+        return bits ^ t ^ t >>> 7;
+    }
+
+    /** Return a well-mixed function of X (the SplitMix64 finaliser). */
+    private static long mix(long x) {
+        x = (x ^ x >>> 30) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ x >>> 27) * 0x94d049bb133111ebL;
+        return x ^ x >>> 31;
+    }
+
+    /** Constants distinguishing the two sides' contributions to keys. */
+    private static final long KEY_MULTIPLIER = 0x9e3779b97f4a7c15L,
+        WHITE_SALT = 0x632be59bd9b4e019L;
+
+    /** SQUARE_MAP[T][S] is the index of the image of square index S under
+     *  transform T. */
+    private static final int[][] SQUARE_MAP = new int[COUNT][NUM_SQUARES];
+    /** INVERSE[T] is the inverse of transform T. */
+    private static final int[] INVERSE = new int[COUNT];
+
+    static {
+        for (int t = 0; t < COUNT; t += 1) {
+            for (Square s : ALL_SQUARES) {
+                int c = s.col(), r = s.row();
+                if ((t & TRANSPOSE) != 0) {
+                    int tmp = c;
+                    c = r;
+                    r = tmp;
+                }
+                if ((t & MIRROR) != 0) {
+                    c = BOARD_SIZE - 1 - c;
+                }
+                if ((t & FLIP) != 0) {
+                    r = BOARD_SIZE - 1 - r;
+                }
+                SQUARE_MAP[t][s.index()] = sq(c, r).index();
+            }
+        }
+        for (int t = 0; t < COUNT; t += 1) {
+            for (int u = 0; u < COUNT; u += 1) {
+                int s;
+                for (s = 0; s < NUM_SQUARES; s += 1) {
+                    if (SQUARE_MAP[u][SQUARE_MAP[t][s]] != s) {
+                        break;
+                    }
+                }
+                if (s == NUM_SQUARES) {
+                    INVERSE[t] = u;
+                }
+            }
+        }
+    }
+
+    /** Not instantiable. */
+    private Symmetry() {
+    }
+}
@@ -0,0 +1,63 @@
+package loa;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+import static loa.Square.sq;
+
+/** Tests of Symmetry.
+ *  @author Shivang Singh
+ */
+public class SymmetryTest {
+
+    /** Test that each image of a position under the board's symmetries,
+     *  and with its colours and side to move exchanged, has the same
+     *  canonical key, and that moves map between it and the canonical
+     *  position. */
+    @Test
+    public void testCanonical() {
+        Board b = new Board(BoardTest.BOARD1, BP);
+        long key = Symmetry.canonical(b, false).key();
+        long swappedKey = Symmetry.canonical(b, true).key();
+        Piece[][] exchanged = new Piece[8][8];
+        for (int r = 0; r < 8; r += 1) {
+            for (int c = 0; c < 8; c += 1) {
+                Piece p = BoardTest.BOARD1[r][c];
+                exchanged[r][c] = p == EMP ? EMP : p.opposite();
+            }
+        }
+        Symmetry.Canonical other =
+            Symmetry.canonical(new Board(exchanged, WP), true);
+        assertEquals("colour-exchanged key", swappedKey, other.key());
+        assertNotEquals("side exchanged",
+                        Symmetry.canonical(b, true).swapped(),
+                        other.swapped());
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            Piece[][] image = new Piece[8][8];
+            for (int r = 0; r < 8; r += 1) {
+                for (int c = 0; c < 8; c += 1) {
+                    Square s = Symmetry.transform(sq(c, r), t);
+                    image[s.row()][s.col()] = b.get(sq(c, r));
+                }
+            }
+            Board bt = new Board(image, BP);
+            for (Piece side : new Piece[] { BP, WP }) {
+                assertEquals("transformed bits",
+                             Symmetry.transform(b.pieceBits(side), t),
+                             bt.pieceBits(side));
+            }
+            Symmetry.Canonical canon = Symmetry.canonical(bt, false);
+            assertEquals("canonical key", key, canon.key());
+            assertEquals("legal move count", b.legalMoves().size(),
+                         bt.legalMoves().size());
+            for (Move mv : bt.legalMoves()) {
+                assertEquals("move round trip", mv,
+                             canon.toOriginal(canon.toCanonical(mv)));
+                assertTrue("transformed move is legal",
+                           b.isLegal(Symmetry.transform(mv,
+                                                        Symmetry.inverse(t))));
+            }
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package loa;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static loa.BitBoards.*;
+import static loa.Piece.*;
+import static loa.Square.NUM_SQUARES;
+
+/** Endgame tablebases for positions in which each side has between 2 and
+ *  maxPieces() pieces.  (A side with one piece is already connected.)
+ *  Every such position, with either side to move, has a one-byte entry
+ *  giving its value for the side to move under perfect play, ignoring
+ *  the move limit: a win or loss with the number of plies until the game
+ *  ends (distance to connect), or a draw.
+ *
+ *  Tables are generated by retrograde analysis: the positions that are
+ *  decided in N plies are found in the N-th of a series of parallel passes
+ *  over all undecided positions, using the results of earlier passes and
+ *  of the (already solved) tables with fewer pieces that captures lead
+ *  to.  The resulting file is memory-mapped by load.
+ *
+ *  The file holds a header (MAGIC and maxPieces()) followed by the tables
+ *  for each number of black and white pieces, in order of increasing black
+ *  and then white count.  Within a table, the entry for black pieces B,
+ *  white pieces W and side to move T is at
+ *      (rank(B) * C(64 - #B, #W) + rank(W')) * 2 + T.ordinal(),
+ *  where rank is the combinatorial-number-system rank of a set of
+ *  squares, and W' is W numbered among the squares not in B.  Tables
+ *  with three pieces a side exceed 2 GB, so entries are addressed by long
+ *  indices into pages (Entries).  Generating them needs as much memory.
+ *  @author Shivang Singh
+ */
+class Tablebase {
+
+    /** Identifies a tablebase file. */
+    static final int MAGIC = 0x4c4f4154;
+    /** Size of the file header (bytes). */
+    static final int HEADER_SIZE = 8;
+    /** Entry value for a draw (or an unused entry). */
+    static final int DRAW = 0;
+    /** Entry values for a win (loss) in 0 plies.  A win (loss) in N plies
+     *  is WIN + N (LOSS + N). */
+    static final int WIN = 1, LOSS = 128;
+    /** Largest representable distance to connect. */
+    static final int MAX_DISTANCE = 126;
+    /** Result of probe for a position the tables do not cover. */
+    static final int NOT_FOUND = -1;
+    /** Entries are held in pages of 2**PAGE_BITS bytes. */
+    static final int PAGE_BITS = 30;
+
+    /** BINOM[N][K] is N choose K (0 if K > N). */
+    private static final long[][] BINOM =
+        new long[NUM_SQUARES + 1][NUM_SQUARES + 1];
+
+    static {
+        for (int n = 0; n <= NUM_SQUARES; n += 1) {
+            BINOM[n][0] = 1;
+            for (int k = 1; k <= n; k += 1) {
+                BINOM[n][k] = BINOM[n - 1][k - 1] + BINOM[n - 1][k];
+            }
+        }
+    }
+
+    /** A tablebase for up to MAXPIECES per side whose entries are
+     *  DATA. */
+    private Tablebase(int maxPieces, Entries data) {
+        _maxPieces = maxPieces;
+        _data = data;
+        _offsets = offsets(maxPieces);
+    }
+
+    /** Return the tablebase in FILE, which is memory-mapped. */
+    static Tablebase load(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer header =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("not a tablebase: " + file);
+            }
+            int maxPieces = header.getInt(4);
+            long[] offsets = offsets(maxPieces);
+            long size = offsets[offsets.length - 1];
+            if (channel.size() != HEADER_SIZE + size) {
+                throw new IOException("truncated tablebase: " + file);
+            }
+            return new Tablebase(maxPieces,
+                                 Entries.map(channel, HEADER_SIZE, size));
+        }
+    }
+
+    /** Return the largest number of pieces per side covered. */
+    int maxPieces() {
+        return _maxPieces;
+    }
+
+    /** Return the entry for BOARD, or NOT_FOUND if it is not covered. */
+    int probe(Board board) {
+        long black = board.pieceBits(BP), white = board.pieceBits(WP);
+        int nb = Long.bitCount(black), nw = Long.bitCount(white);
+        if (nb < 2 || nw < 2 || nb > _maxPieces || nw > _maxPieces) {
+            return NOT_FOUND;
+        }
+        long index = _offsets[tableNumber(nb, nw, _maxPieces)]
+            + index(black, white, board.turn() == WP ? 1 : 0);
+        return _data.get(index);
+    }
+
+    /** Return true iff ENTRY is a win for the side to move. */
+    static boolean isWin(int entry) {
+        return entry >= WIN && entry < LOSS;
+    }
+
+    /** Return true iff ENTRY is a loss for the side to move. */
+    static boolean isLoss(int entry) {
+        return entry >= LOSS;
+    }
+
+    /** Return the distance to connect (plies) of a decided ENTRY. */
+    static int distance(int entry) {
+        return isLoss(entry) ? entry - LOSS : entry - WIN;
+    }
+
+    /** Solve all positions with at most MAXPIECES per side and write the
+     *  tables to FILE. */
+    static void generate(int maxPieces, File file) throws IOException {
+        long[] offsets = offsets(maxPieces);
+        Entries data = Entries.allocate(offsets[offsets.length - 1]);
+        for (int pieces = 4; pieces <= 2 * maxPieces; pieces += 1) {
+            for (int nb = 2; nb <= maxPieces; nb += 1) {
+                int nw = pieces - nb;
+                if (nw >= 2 && nw <= maxPieces) {
+                    new Solver(data, offsets, maxPieces, nb, nw).solve();
+                }
+            }
+        }
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(maxPieces);
+            data.write(out.getChannel());
+        }
+    }
+
+    /** Return the starting offsets of the tables for up to MAXPIECES per
+     *  side, indexed by tableNumber, followed by the total size. */
+    private static long[] offsets(int maxPieces) {
+        int n = maxPieces - 1;
+        long[] result = new long[n * n + 1];
+        for (int nb = 2; nb <= maxPieces; nb += 1) {
+            for (int nw = 2; nw <= maxPieces; nw += 1) {
+                int k = tableNumber(nb, nw, maxPieces);
+                result[k + 1] = result[k]
+                    + BINOM[NUM_SQUARES][nb]
+                    * BINOM[NUM_SQUARES - nb][nw] * 2;
+            }
+        }
+        return result;
+    }
+
+    /** Return the position of the table for NB black and NW white pieces
+     *  among the tables for up to MAXPIECES per side. */
+    private static int tableNumber(int nb, int nw, int maxPieces) {
+        return (nb - 2) * (maxPieces - 1) + nw - 2;
+    }
+
+    /** Return the index within its table of the position with BLACK and
+     *  WHITE pieces and side to move with ordinal TURN. */
+    private static long index(long black, long white, int turn) {
+        int nb = Long.bitCount(black);
+        return (rank(black) * BINOM[NUM_SQUARES - nb][Long.bitCount(white)]
+                + rank(compress(white, black))) * 2 + turn;
+    }
+
+    /** Return SET with the squares in REMOVED, which it does not contain,
+     *  taken out, numbering the remaining squares consecutively. */
+    private static long compress(long set, long removed) {
+        for (; removed != 0; removed &= ~Long.highestOneBit(removed)) {
+            long below = Long.highestOneBit(removed) - 1;
+            set = set & below | set >>> 1 & ~below;
+        }
+        return set;
+    }
+
+    /** Return the inverse of compress(SET, INSERTED): SET numbered among
+     *  the squares not in INSERTED. */
+    private static long expand(long set, long inserted) {
+        for (; inserted != 0; inserted &= inserted - 1) {
+            long below = Long.lowestOneBit(inserted) - 1;
+            set = set & below | (set & ~below) << 1;
+        }
+        return set;
+    }
+
+    /** Return the rank of SET among the sets of the same size, in the
+     *  combinatorial number system. */
+    private static long rank(long set) {
+        long result = 0;
+        for (int k = 1; set != 0; k += 1, set &= set - 1) {
+            result += BINOM[Long.numberOfTrailingZeros(set)][k];
+        }
+        return result;
+    }
+
+    /** Return the sets of K of the first N squares, in order of rank. */
+    private static long[] combinations(int n, int k) {
+        long[] result = new long[(int) BINOM[n][k]];
+        long set = (1L << k) - 1;
+        for (int r = 0; r < result.length; r += 1) {
+            result[r] = set;
+            long low = set & -set, ripple = set + low;
+            set = ripple == 0 ? 0
+                : ripple | ((set ^ ripple) >>> 2) / low;
+        }
+        return result;
+    }
+
+    /** Solves the table for one number of black and white pieces. */
+    private static class Solver {
+
+        /** Number of index ranges into which each pass is divided. */
+        static final int CHUNKS = 256;
+
+        /** A solver for the table for NB black and NW white pieces, within
+         *  the tables for up to MAXPIECES per side at OFFSETS in DATA. */
+        Solver(Entries data, long[] offsets, int maxPieces, int nb, int nw) {
+            _data = data;
+            _offsets = offsets;
+            _maxPieces = maxPieces;
+            _base = offsets[tableNumber(nb, nw, maxPieces)];
+            _blackSets = combinations(NUM_SQUARES, nb);
+            _whiteSets = combinations(NUM_SQUARES - nb, nw);
+            _size = (long) _blackSets.length * _whiteSets.length * 2;
+            _maxSubDistance = Math.max(maxDistance(nb - 1, nw),
+                                       maxDistance(nb, nw - 1));
+        }
+
+        /** Fill in my table. */
+        void solve() {
+            AtomicBoolean changed = new AtomicBoolean();
+            for (int pass = 0; pass <= MAX_DISTANCE; pass += 1) {
+                int distance = pass;
+                changed.set(false);
+                IntStream.range(0, CHUNKS).parallel().forEach(chunk -> {
+                    long start = _size * chunk / CHUNKS,
+                        end = _size * (chunk + 1) / CHUNKS;
+                    for (long i = start; i < end; i += 1) {
+                        if (_data.get(_base + i) == DRAW
+                            && resolve(i, distance)) {
+                            changed.set(true);
+                        }
+                    }
+                });
+                if (!changed.get() && pass > _maxSubDistance + 1) {
+                    return;
+                }
+            }
+        }
+
+        /** Set the entry for position I of my table if it is decided in
+         *  exactly DISTANCE plies, returning true iff it is. */
+        private boolean resolve(long i, int distance) {
+            int turn = (int) (i & 1);
+            long rest = i >>> 1;
+            long black = _blackSets[(int) (rest / _whiteSets.length)],
+                white = expand(_whiteSets[(int) (rest % _whiteSets.length)],
+                               black);
+            long own = turn == 0 ? black : white,
+                opp = turn == 0 ? white : black;
+            if (distance == 0) {
+                if (connected(opp)) {
+                    return set(i, LOSS);
+                } else if (connected(own)) {
+                    return set(i, WIN);
+                }
+                return false;
+            }
+            boolean allLost = true;
+            boolean sawMove = false;
+            for (long pieces = own; pieces != 0; pieces &= pieces - 1) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                for (int dir = 0; dir < 8; dir += 1) {
+                    int to = moveTarget(from, dir, own, opp);
+                    if (to < 0) {
+                        continue;
+                    }
+                    sawMove = true;
+                    long newOwn = own & ~(1L << from) | 1L << to,
+                        newOpp = opp & ~(1L << to);
+                    int child = childEntry(newOwn, newOpp, 1 - turn);
+                    if (isLoss(child)) {
+                        if (distance(child) == distance - 1) {
+                            return set(i, WIN + distance);
+                        }
+                        allLost = false;
+                    } else if (!isWin(child)
+                               || distance(child) >= distance) {
+                        allLost = false;
+                    }
+                }
+            }
+            if (sawMove && allLost) {
+                return set(i, LOSS + distance);
+            }
+            return false;
+        }
+
+        /** Return the entry for the position reached after a move, with
+         *  the mover's pieces MOVER, the pieces of the side to move OWN,
+         *  and TURN the ordinal of the side to move. */
+        private int childEntry(long mover, long own, int turn) {
+            if (connected(mover)) {
+                return LOSS;
+            } else if (connected(own)) {
+                return WIN;
+            }
+            long black = turn == 0 ? own : mover,
+                white = turn == 0 ? mover : own;
+            int nb = Long.bitCount(black), nw = Long.bitCount(white);
+            long k = _offsets[tableNumber(nb, nw, _maxPieces)]
+                + index(black, white, turn);
+            return _data.get(k);
+        }
+
+        /** Set entry I of my table to VALUE, returning true. */
+        private boolean set(long i, int value) {
+            _data.set(_base + i, value);
+            return true;
+        }
+
+        /** Return the greatest distance in the table for NB black and NW
+         *  white pieces, or 0 if there is no such table. */
+        private int maxDistance(int nb, int nw) {
+            if (nb < 2 || nw < 2) {
+                return 0;
+            }
+            int k = tableNumber(nb, nw, _maxPieces);
+            int result = 0;
+            for (long i = _offsets[k]; i < _offsets[k + 1]; i += 1) {
+                int entry = _data.get(i);
+                if (entry != DRAW) {
+                    result = Math.max(result, distance(entry));
+                }
+            }
+            return result;
+        }
+
+        /** All the tables. */
+        private final Entries _data;
+        /** Offsets of the tables in _data. */
+        private final long[] _offsets;
+        /** Maximum pieces per side. */
+        private final int _maxPieces;
+        /** Offset of my table. */
+        private final long _base;
+        /** Size of my table. */
+        private final long _size;
+        /** Sets of black and of white pieces, by rank. */
+        private final long[] _blackSets, _whiteSets;
+        /** Greatest distance in the tables that captures lead to.  Passes
+         *  continue at least until that distance has been exceeded. */
+        private final int _maxSubDistance;
+    }
+
+    /** The entries of all the tables, in pages of at most 2**PAGE_BITS
+     *  bytes, since one array or buffer cannot exceed 2 GB. */
+    private static class Entries {
+
+        /** Entries held in PAGES, each but the last of 2**PAGE_BITS
+         *  bytes. */
+        Entries(ByteBuffer[] pages) {
+            _pages = pages;
+        }
+
+        /** Return SIZE zero entries in heap memory. */
+        static Entries allocate(long size) {
+            ByteBuffer[] pages = new ByteBuffer[pageCount(size)];
+            for (int p = 0; p < pages.length; p += 1) {
+                pages[p] = ByteBuffer.allocate(pageSize(size, p));
+            }
+            return new Entries(pages);
+        }
+
+        /** Return the SIZE entries starting at byte START of CHANNEL,
+         *  mapped read-only. */
+        static Entries map(FileChannel channel, long start, long size)
+            throws IOException {
+            ByteBuffer[] pages = new ByteBuffer[pageCount(size)];
+            for (int p = 0; p < pages.length; p += 1) {
+                pages[p] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                       start + ((long) p << PAGE_BITS),
+                                       pageSize(size, p));
+            }
+            return new Entries(pages);
+        }
+
+        /** Return entry I. */
+        int get(long i) {
+            return _pages[(int) (i >>> PAGE_BITS)].get((int) (i & PAGE_MASK))
+                & 0xff;
+        }
+
+        /** Set entry I to VALUE. */
+        void set(long i, int value) {
+            _pages[(int) (i >>> PAGE_BITS)]
+                .put((int) (i & PAGE_MASK), (byte) value);
+        }
+
+        /** Write all entries to OUT. */
+        void write(FileChannel out) throws IOException {
+            for (ByteBuffer page : _pages) {
+                ByteBuffer all = page.duplicate();
+                all.clear();
+                while (all.hasRemaining()) {
+                    out.write(all);
+                }
+            }
+        }
+
+        /** Return the number of pages holding SIZE entries. */
+        private static int pageCount(long size) {
+            return (int) ((size + PAGE_MASK) >>> PAGE_BITS);
+        }
+
+        /** Return the size of page P of those holding SIZE entries. */
+        private static int pageSize(long size, int p) {
+            return (int) Math.min(PAGE_MASK + 1,
+                                  size - ((long) p << PAGE_BITS));
+        }
+
+        /** Mask giving the position of an entry within its page. */
+        private static final long PAGE_MASK = (1L << PAGE_BITS) - 1;
+
+        /** The pages. */
+        private final ByteBuffer[] _pages;
+    }
+
+    /** Generate a tablebase: java loa.Tablebase MAXPIECES FILE. */
+    public static void main(String... args) throws IOException {
+        if (args.length != 2) {
+            Utils.error(1, "Usage: java loa.Tablebase MAXPIECES FILE%n");
+        }
+        long start = System.currentTimeMillis();
+        generate(Integer.parseInt(args[0]), new File(args[1]));
+        System.out.printf("Generated in %d ms.%n",
+                          System.currentTimeMillis() - start);
+    }
+
+    /** Maximum pieces per side. */
+    private final int _maxPieces;
+    /** The entries. */
+    private final Entries _data;
+    /** Offsets of the tables in _data, by tableNumber. */
+    private final long[] _offsets;
+}
@@ -0,0 +1,137 @@
+package loa;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static loa.Piece.*;
+
+/** Tests of Tablebase.
+ *  @author Shivang Singh
+ */
+public class TablebaseTest {
+
+    /** Test the tables for two pieces a side on known positions, against
+     *  the values of their successors found with Board's move generator,
+     *  and under the board's symmetries and exchange of colours. */
+    @Test
+    public void testRetrograde() throws IOException {
+        File file = File.createTempFile("loa", ".tb");
+        file.deleteOnExit();
+        Tablebase.generate(2, file);
+        Tablebase tables = Tablebase.load(file);
+        assertEquals("max pieces", 2, tables.maxPieces());
+
+        long black = bits("a1", "a3"), white = bits("h1", "g8");
+        assertEquals("win in one", Tablebase.WIN + 1,
+                     tables.probe(board(black, white, BP)));
+        black = bits("d4", "e5");
+        assertEquals("connected", Tablebase.WIN,
+                     tables.probe(board(black, white, BP)));
+        assertEquals("opponent connected", Tablebase.LOSS,
+                     tables.probe(board(black, white, WP)));
+        assertEquals("three pieces", Tablebase.NOT_FOUND,
+                     tables.probe(board(black | bits("a8"), white, WP)));
+
+        Random random = new Random(30);
+        for (int n = 0; n < 2000; n += 1) {
+            black = randomPieces(random, 2, 0);
+            white = randomPieces(random, 2, black);
+            Piece turn = random.nextBoolean() ? BP : WP;
+            int entry = tables.probe(board(black, white, turn));
+            assertEquals("successors", expected(tables, black, white, turn),
+                         entry);
+            for (int t = 0; t < Symmetry.COUNT; t += 1) {
+                assertEquals("symmetry " + t, entry,
+                             tables.probe(board(Symmetry.transform(black, t),
+                                                Symmetry.transform(white, t),
+                                                turn)));
+            }
+            assertEquals("colours exchanged", entry,
+                         tables.probe(board(white, black, turn.opposite())));
+        }
+    }
+
+    /** Return the entry for the position with BLACK and WHITE pieces and
+     *  TURN to move, as computed from the TABLES' entries for the
+     *  positions after each of its legal moves. */
+    private static int expected(Tablebase tables, long black, long white,
+                                Piece turn) {
+        Board board = board(black, white, turn);
+        if (board.piecesContiguous(turn.opposite())) {
+            return Tablebase.LOSS;
+        } else if (board.piecesContiguous(turn)) {
+            return Tablebase.WIN;
+        }
+        int fastestWin = Integer.MAX_VALUE, slowestLoss = -1;
+        boolean allLost = true;
+        for (Move move : board.legalMoves()) {
+            Board child = board(black, white, turn);
+            child.makeMove(move);
+            int entry;
+            if (child.winner() != null) {
+                entry = child.winner() == turn ? Tablebase.LOSS
+                    : Tablebase.WIN;
+            } else {
+                entry = tables.probe(child);
+            }
+            if (Tablebase.isLoss(entry)) {
+                fastestWin = Math.min(fastestWin,
+                                      Tablebase.distance(entry) + 1);
+            } else if (Tablebase.isWin(entry)) {
+                slowestLoss = Math.max(slowestLoss,
+                                       Tablebase.distance(entry) + 1);
+            } else {
+                allLost = false;
+            }
+        }
+        if (fastestWin != Integer.MAX_VALUE) {
+            return Tablebase.WIN + fastestWin;
+        } else if (allLost && slowestLoss >= 0) {
+            return Tablebase.LOSS + slowestLoss;
+        }
+        return Tablebase.DRAW;
+    }
+
+    /** Return a board with BLACK and WHITE pieces and TURN to move. */
+    private static Board board(long black, long white, Piece turn) {
+        Piece[][] contents = new Piece[Square.BOARD_SIZE][Square.BOARD_SIZE];
+        for (Piece[] row : contents) {
+            Arrays.fill(row, EMP);
+        }
+        for (Square sq : Square.ALL_SQUARES) {
+            long bit = 1L << sq.index();
+            if ((black & bit) != 0) {
+                contents[sq.row()][sq.col()] = BP;
+            } else if ((white & bit) != 0) {
+                contents[sq.row()][sq.col()] = WP;
+            }
+        }
+        return new Board(contents, turn);
+    }
+
+    /** Return the set of SQUARES. */
+    private static long bits(String... squares) {
+        long result = 0;
+        for (String name : squares) {
+            result |= 1L << Square.sq(name).index();
+        }
+        return result;
+    }
+
+    /** Return a set of N random squares that are not in OCCUPIED. */
+    private static long randomPieces(Random random, int n, long occupied) {
+        long result = 0;
+        while (Long.bitCount(result) < n) {
+            long square = 1L << random.nextInt(Square.NUM_SQUARES);
+            if ((square & occupied) == 0) {
+                result |= square;
+            }
+        }
+        return result;
+    }
+}
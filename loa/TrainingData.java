@@ -0,0 +1,178 @@
+package loa;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static loa.Piece.*;
+
+/** Exports training data for a Network from games a MachinePlayer plays
+ *  against itself.  Each game opens with a number of random moves (from a
+ *  seeded generator, so runs are repeatable), after which both sides play
+ *  the moves found by a search of fixed depth.  Every position reached
+ *  after the opening whose value is not decided is written on a line of
+ *  its own as
+ *      BLACK WHITE SIDE VALUE RESULT
+ *  where BLACK and WHITE are the sides' bitboards (see Board.pieceBits)
+ *  in hexadecimal, SIDE is the side to move (b or w), VALUE is the value
+ *  the search found (positive favours white) and RESULT is the result of
+ *  the game: 1 if white won, -1 if black won, and 0 for a tie.
+ *
+ *  Games are played in parallel, each worker thread with a MachinePlayer
+ *  of its own, and written in order.  Run with -Dloa.network=FILE, the
+ *  players use that network, so that each generation of networks can be
+ *  trained on the games of the last.
+ *  @author Shivang Singh
+ */
+final class TrainingData {
+
+    /** Default number of games. */
+    static final int DEFAULT_GAMES = 100;
+    /** Default depth of the search for each move. */
+    static final int DEFAULT_DEPTH = 3;
+    /** Default number of random moves opening each game. */
+    static final int DEFAULT_RANDOM_PLIES = 8;
+
+    /** An exporter playing games with searches to DEPTH after RANDOMPLIES
+     *  random moves, the random moves of game K coming from a generator
+     *  seeded with SEED + K. */
+    TrainingData(int depth, int randomPlies, long seed) {
+        _limits = SearchLimits.depth(depth);
+        _randomPlies = randomPlies;
+        _seed = seed;
+    }
+
+    /** Play GAMES games with THREADS workers, writing their positions to
+     *  OUT in order.  Returns the number of positions written. */
+    long export(int games, int threads, PrintStream out) {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> records = new ArrayList<>();
+            for (int k = 0; k < games; k += 1) {
+                int number = k;
+                records.add(workers.submit(() -> play(number)));
+            }
+            for (Future<String> record : records) {
+                out.print(record.get());
+                out.flush();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        return _positions.sum();
+    }
+
+    /** Return the records of the positions of game number NUMBER, played
+     *  on this thread. */
+    private String play(int number) {
+        MachinePlayer engine = _engines.get();
+        Random random = new Random(_seed + number);
+        Board board = new Board();
+        for (int k = 0; k < _randomPlies && !board.gameOver(); k += 1) {
+            List<Move> moves = board.legalMoves();
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        StringBuilder records = new StringBuilder();
+        List<String> positions = new ArrayList<>();
+        while (!board.gameOver()) {
+            int[] value = new int[1];
+            Move best = engine.searchForMove(board, _limits,
+                                             (depth, score, nodes, millis,
+                                              pv) -> value[0] = score);
+            if (Math.abs(value[0]) < MachinePlayer.DECIDED_VALUE) {
+                positions.add(String.format("%016x %016x %s %d",
+                                            board.pieceBits(BP),
+                                            board.pieceBits(WP),
+                                            board.turn() == WP ? "w" : "b",
+                                            value[0]));
+            }
+            board.makeMove(best);
+        }
+        Piece winner = board.winner();
+        int result = winner == WP ? 1 : winner == BP ? -1 : 0;
+        for (String position : positions) {
+            records.append(String.format("%s %d%n", position, result));
+        }
+        _positions.add(positions.size());
+        return records.toString();
+    }
+
+    /** Write training data to the file named by the first of ARGS that is
+     *  not an option (the standard output if there is none), with the
+     *  options --games=N, --depth=D, --random=K (random opening moves),
+     *  --seed=S and --threads=T (default: one per processor). */
+    public static void main(String... args) {
+        int games = DEFAULT_GAMES, depth = DEFAULT_DEPTH,
+            randomPlies = DEFAULT_RANDOM_PLIES,
+            threads = Runtime.getRuntime().availableProcessors();
+        long seed = 0;
+        String file = null;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--games=")) {
+                    games = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--depth=")) {
+                    depth = Integer.parseInt(arg.substring(8));
+                } else if (arg.startsWith("--random=")) {
+                    randomPlies = Integer.parseInt(arg.substring(9));
+                } else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(arg.substring(7));
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring(10));
+                } else if (arg.startsWith("--") || file != null) {
+                    throw new NumberFormatException();
+                } else {
+                    file = arg;
+                }
+            }
+        } catch (NumberFormatException excp) {
+            Utils.error(1, "Usage: java loa.TrainingData [--games=N] "
+                        + "[--depth=D] [--random=K] [--seed=S] "
+                        + "[--threads=T] [FILE]%n");
+        }
+        if (games < 0 || depth < 1 || randomPlies < 0 || threads < 1) {
+            Utils.error(1, "depth and threads must be positive, and games "
+                        + "and random moves not negative%n");
+        }
+        PrintStream out = System.out;
+        if (file != null) {
+            try {
+                out = new PrintStream(file);
+            } catch (FileNotFoundException excp) {
+                Utils.error(1, "cannot write %s%n", file);
+            }
+        }
+        TrainingData exporter = new TrainingData(depth, randomPlies, seed);
+        long start = System.currentTimeMillis();
+        long positions = exporter.export(games, threads, out);
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        if (file != null) {
+            out.close();
+        }
+        System.err.printf("%d games, %d positions in %d ms%n", games,
+                          positions, millis);
+    }
+
+    /** Limits of the search for each move. */
+    private final SearchLimits _limits;
+    /** Number of random moves opening each game. */
+    private final int _randomPlies;
+    /** Seed of the random moves of game 0. */
+    private final long _seed;
+    /** The engine of each worker thread. */
+    private final ThreadLocal<MachinePlayer> _engines =
+        ThreadLocal.withInitial(MachinePlayer::new);
+    /** Positions written. */
+    private final LongAdder _positions = new LongAdder();
+}
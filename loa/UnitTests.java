@@ -15,6 +15,25 @@ public class UnitTests {
     public static void main(String[] ignored) {
         textui.runClasses(UnitTests.class);
         textui.runClasses(BoardTest.class);
+        textui.runClasses(EngineSessionTest.class);
+        textui.runClasses(SymmetryTest.class);
+        textui.runClasses(ProofSolverTest.class);
+        textui.runClasses(AnalysisCacheTest.class);
+        textui.runClasses(NetworkTest.class);
+        textui.runClasses(AsyncReporterTest.class);
+        textui.runClasses(SearchTraceTest.class);
+        textui.runClasses(SelfPlayWorkerTest.class);
+        textui.runClasses(SearchLimitsTest.class);
+        textui.runClasses(SearchRunnerTest.class);
+        textui.runClasses(BatchEvaluatorTest.class);
+        textui.runClasses(TablebaseTest.class);
+        textui.runClasses(MovePickerTest.class);
+        textui.runClasses(MctsPlayerTest.class);
+        textui.runClasses(MachinePlayerTest.class);
+        textui.runClasses(BenchTest.class);
+        textui.runClasses(MetricsTest.class);
+        textui.runClasses(AnnotatorTest.class);
+        textui.runClasses(SelfPlayCoordinatorTest.class);
     }
 
     /** A dummy test to avoid complaint. */
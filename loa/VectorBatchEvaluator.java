@@ -0,0 +1,126 @@
+package loa;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.LSHR;
+
+/** A BatchEvaluator that evaluates as many positions at once as fit in a
+ *  vector register, one per lane, computing the same terms as the scalar
+ *  BatchEvaluator.  Needs the jdk.incubator.vector module; BatchEvaluator
+ *  loads this class only if it is present.
+ *
+ *  Lane results are narrowed to ints and stored straight into the
+ *  scores.  The spread's division is done in double lanes (exact for
+ *  these magnitudes), since long lanes have no hardware division.  The
+ *  population count uses VectorOperators.BIT_COUNT where the JDK has it.
+ *  @author Shivang Singh
+ */
+final class VectorBatchEvaluator extends BatchEvaluator {
+
+    @Override
+    void evaluate(long[] black, long[] white, int n, int[] scores) {
+        int k;
+        for (k = 0; k < SPECIES.loopBound(n); k += SPECIES.length()) {
+            ((IntVector) sideTerm(LongVector.fromArray(SPECIES, black, k))
+             .sub(sideTerm(LongVector.fromArray(SPECIES, white, k)))
+             .castShape(INT_SPECIES, 0)).intoArray(scores, k);
+        }
+        for (; k < n; k += 1) {
+            scores[k] = evaluate(black[k], white[k]);
+        }
+    }
+
+    @Override
+    boolean vectorised() {
+        return true;
+    }
+
+    /** Return the lanewise penalty terms of the sides with pieces BITS. */
+    private static LongVector sideTerm(LongVector bits) {
+        LongVector count = bitCount(bits);
+        return euler(bits, count).mul(GROUP_WEIGHT)
+            .add(spread(bits, count));
+    }
+
+    /** Return the lanewise Euler numbers of BITS, whose population counts
+     *  are COUNT (see BatchEvaluator.euler). */
+    private static LongVector euler(LongVector bits, LongVector count) {
+        LongVector e = bits.lanewise(LSHR, 1).and(~BitBoards.FILE_H),
+            n = bits.lanewise(LSHR, BOARD_SIZE),
+            ne = bits.lanewise(LSHR, BOARD_SIZE + 1).and(~BitBoards.FILE_H),
+            nw = bits.lanewise(LSHR, BOARD_SIZE - 1).and(~BitBoards.FILE_A);
+        LongVector three = bits.and(e).and(n.or(ne))
+            .or(n.and(ne).and(bits.or(e)));
+        return count
+            .sub(bitCount(bits.and(e))).sub(bitCount(bits.and(n)))
+            .sub(bitCount(bits.and(ne))).sub(bitCount(bits.and(nw)))
+            .add(bitCount(three))
+            .add(bitCount(bits.and(e).and(n).and(ne)).mul(2));
+    }
+
+    /** Return the lanewise spreads of BITS, whose population counts are
+     *  COUNT (see BatchEvaluator.spread). */
+    private static LongVector spread(LongVector bits, LongVector count) {
+        LongVector sum = LongVector.zero(SPECIES),
+            sumSquares = LongVector.zero(SPECIES);
+        for (long[] coordBits : new long[][] { COL_BIT, ROW_BIT }) {
+            LongVector s = LongVector.zero(SPECIES);
+            for (int j = 0; j < COORD_BITS; j += 1) {
+                LongVector bitsJ = bits.and(coordBits[j]);
+                s = s.add(bitCount(bitsJ).lanewise(VectorOperators.LSHL, j));
+                for (int k = 0; k < COORD_BITS; k += 1) {
+                    sumSquares = sumSquares.add(
+                        bitCount(bitsJ.and(coordBits[k]))
+                        .lanewise(VectorOperators.LSHL, j + k));
+                }
+            }
+            sum = sum.add(s.mul(s));
+        }
+        DoubleVector divisor =
+            (DoubleVector) count.mul(count).max(1)
+            .convert(VectorOperators.L2D, 0);
+        return (LongVector) ((DoubleVector) count.mul(sumSquares).sub(sum)
+                             .mul(SPREAD_SCALE)
+                             .convert(VectorOperators.L2D, 0))
+            .div(divisor).convert(VectorOperators.D2L, 0);
+    }
+
+    /** Return the lanewise population counts of X. */
+    private static LongVector bitCount(LongVector x) {
+        if (BIT_COUNT != null) {
+            return x.lanewise(BIT_COUNT);
+        }
+        x = x.sub(x.lanewise(LSHR, 1).and(0x5555555555555555L));
+        x = x.and(0x3333333333333333L)
+            .add(x.lanewise(LSHR, 2).and(0x3333333333333333L));
+        x = x.add(x.lanewise(LSHR, 4)).and(0x0f0f0f0f0f0f0f0fL);
+        return x.mul(0x0101010101010101L).lanewise(LSHR, 56);
+    }
+
+    /** Return the lanewise population count operator, or null if this
+     *  JDK lacks it (it appeared after JDK 17). */
+    private static VectorOperators.Unary bitCountOperator() {
+        try {
+            return (VectorOperators.Unary)
+                VectorOperators.class.getField("BIT_COUNT").get(null);
+        } catch (ReflectiveOperationException excp) {
+            return null;
+        }
+    }
+
+    /** Vector shape used. */
+    private static final VectorSpecies<Long> SPECIES =
+        LongVector.SPECIES_PREFERRED;
+    /** Species holding one int for each lane of SPECIES. */
+    private static final VectorSpecies<Integer> INT_SPECIES =
+        VectorSpecies.of(int.class,
+                         VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+    /** The population count operator, or null if unavailable. */
+    private static final VectorOperators.Unary BIT_COUNT =
+        bitCountOperator();
+}
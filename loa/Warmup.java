@@ -0,0 +1,56 @@
+package loa;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+
+/** A short, fixed set of searches run when an engine starts, so that its
+ *  classes are loaded and initialised and its hot code compiled before
+ *  the first real move is requested.  Also the training run from which
+ *  "make cds" builds a class-data-sharing archive of the loa classes.
+ *  @author Shivang Singh
+ */
+final class Warmup {
+
+    /** Depth of each warm-up search. */
+    static final int DEPTH = 5;
+    /** Number of positions searched, and the number of plies between
+     *  successive positions of the (reproducible) warm-up game. */
+    static final int POSITIONS = 4, SPACING = 6;
+
+    /** Run the warm-up searches and return their total time (ms). */
+    static long run() {
+        long start = System.currentTimeMillis();
+        MachinePlayer engine = new MachinePlayer();
+        Random random = new Random(SEED);
+        Board board = new Board();
+        for (int k = 0; k < POSITIONS && !board.gameOver(); k += 1) {
+            engine.searchForMove(board, SearchLimits.depth(DEPTH), null);
+            for (int i = 0; i < SPACING && !board.gameOver(); i += 1) {
+                List<Move> moves = board.legalMoves();
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /** Run the warm-up if the system property loa.warmup is true,
+     *  reporting its time on OUT. */
+    static void launch(PrintStream out) {
+        if (Boolean.getBoolean("loa.warmup")) {
+            out.printf("warm-up: %d ms%n", run());
+        }
+    }
+
+    /** Run the warm-up and report its time.  ARGS is ignored. */
+    public static void main(String... args) {
+        System.out.printf("warm-up: %d ms%n", run());
+    }
+
+    /** Seed of the warm-up game. */
+    private static final long SEED = 61;
+
+    /** Not instantiable. */
+    private Warmup() {
+    }
+}